@@ -0,0 +1,192 @@
+package pdc;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Scaling benchmark on top of DistributedSystemRunner. For every combination of
+ * worker count, tile size and Strassen cutoff it starts a real Master plus Worker processes, then for
+ * every matrix size and client count runs a warmup and a closed loop of
+ * MATRIX_MULTIPLY requests (each client sends its next request when the previous
+ * one returns). Throughput, latency percentiles and speedup over the smallest worker
+ * count are written as CSV.
+ *
+ * Usage: java -cp build/classes/java/main:autograder-classes pdc.ClusterBenchmark
+ *            [workers=1,2,4] [sizes=64,128,256] [tiles=0] [clients=1,4]
+ *            [strassen=0] [warmup=5] [requests=20] [out=benchmark.csv] [port=9700] [seed=1]
+ * tiles are MASTER_TILE_ROWS values (0 lets Master choose) and strassen are
+ * MASTER_STRASSEN_CUTOFF values (0 is the classical product). Inputs are generated
+ * from seed, so runs with the same seed multiply the same matrices.
+ */
+public class ClusterBenchmark {
+
+    static class Result {
+        int workers, size, tileRows, strassen, clients, requests;
+        double throughput, p50, p99, p999, speedup;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        int[] workerCounts = ints(opts.getOrDefault("workers", "1,2,4"));
+        int[] sizes = ints(opts.getOrDefault("sizes", "64,128,256"));
+        int[] tiles = ints(opts.getOrDefault("tiles", "0"));
+        int[] clientCounts = ints(opts.getOrDefault("clients", "1,4"));
+        int[] cutoffs = ints(opts.getOrDefault("strassen", "0"));
+        int warmup = Integer.parseInt(opts.getOrDefault("warmup", "5"));
+        int requests = Integer.parseInt(opts.getOrDefault("requests", "20"));
+        String out = opts.getOrDefault("out", "benchmark.csv");
+        int port = Integer.parseInt(opts.getOrDefault("port", "9700"));
+        long seed = Long.parseLong(opts.getOrDefault("seed", "1"));
+
+        List<Result> results = new ArrayList<>();
+        for (int cutoff : cutoffs) {
+            for (int tileRows : tiles) {
+                for (int workers : workerCounts) {
+                    results.addAll(runCluster(port++, workers, tileRows, cutoff, sizes, clientCounts, warmup, requests,
+                            seed));
+                }
+            }
+        }
+        computeSpeedups(results);
+        writeCsv(results, out);
+        System.out.println("[Benchmark] Wrote " + results.size() + " rows to " + out);
+    }
+
+    private static List<Result> runCluster(int port, int workers, int tileRows, int strassen, int[] sizes,
+                                           int[] clientCounts, int warmup, int requests, long seed)
+            throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < workers; i++) ids.add("bench-worker-" + i);
+        ProcessLauncher launcher = new ProcessLauncher();
+        launcher.useClasses("pdc.Master", "pdc.Worker");
+        launcher.setEnv("LOG_LEVEL", "WARN");
+        if (tileRows > 0) launcher.setEnv("MASTER_TILE_ROWS", Integer.toString(tileRows));
+        if (strassen > 0) launcher.setEnv("MASTER_STRASSEN_CUTOFF", Integer.toString(strassen));
+
+        DistributedSystemRunner runner = new DistributedSystemRunner(port, ids, launcher);
+        List<DistributedSystemRunner> clients = new ArrayList<>();
+        List<Result> results = new ArrayList<>();
+        try {
+            runner.start();
+            clients.add(runner);
+            int maxClients = Arrays.stream(clientCounts).max().orElse(1);
+            while (clients.size() < maxClients) clients.add(DistributedSystemRunner.attach(port));
+
+            for (int size : sizes) {
+                String payload = textMatrix(size, seed) + "|" + textMatrix(size, seed + 1);
+                for (int c : clientCounts) {
+                    Result r = runLoad(clients.subList(0, c), payload, warmup, requests);
+                    r.workers = workers;
+                    r.size = size;
+                    r.tileRows = tileRows;
+                    r.strassen = strassen;
+                    r.clients = c;
+                    results.add(r);
+                    System.out.printf("[Benchmark] workers=%d size=%d tile=%d strassen=%d clients=%d: "
+                            + "%.1f req/s p50=%.1fms p99=%.1fms%n", workers, size, tileRows, strassen, c,
+                            r.throughput, r.p50, r.p99);
+                }
+            }
+        } finally {
+            for (int i = 1; i < clients.size(); i++) clients.get(i).shutdown();
+            runner.shutdown();
+        }
+        return results;
+    }
+
+    // Each client runs warmup then requests sequential calls; latencies of the timed calls are pooled
+    private static Result runLoad(List<DistributedSystemRunner> clients, String payload, int warmup, int requests)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients.size());
+        String run = Long.toString(System.nanoTime(), 36);
+        try {
+            List<Future<?>> warm = new ArrayList<>();
+            for (int c = 0; c < clients.size(); c++) {
+                DistributedSystemRunner client = clients.get(c);
+                String prefix = run + "-w" + c + "-";
+                warm.add(pool.submit(() -> {
+                    for (int i = 0; i < warmup; i++) client.executeTask(prefix + i, "MATRIX_MULTIPLY", payload);
+                    return null;
+                }));
+            }
+            for (Future<?> f : warm) f.get();
+
+            long[] latencies = new long[clients.size() * requests];
+            long start = System.nanoTime();
+            List<Future<?>> timed = new ArrayList<>();
+            for (int c = 0; c < clients.size(); c++) {
+                DistributedSystemRunner client = clients.get(c);
+                String prefix = run + "-c" + c + "-";
+                int base = c * requests;
+                timed.add(pool.submit(() -> {
+                    for (int i = 0; i < requests; i++) {
+                        long t0 = System.nanoTime();
+                        client.executeTask(prefix + i, "MATRIX_MULTIPLY", payload);
+                        latencies[base + i] = System.nanoTime() - t0;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : timed) f.get();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            Result r = new Result();
+            r.requests = latencies.length;
+            r.throughput = latencies.length / seconds;
+            r.p50 = percentileMs(latencies, 50);
+            r.p99 = percentileMs(latencies, 99);
+            r.p999 = percentileMs(latencies, 99.9);
+            return r;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Text form of a seeded size x size matrix, generated block by block rather than whole
+    private static String textMatrix(int size, long seed) {
+        return MatrixGenerator.randomRowBlocks(size, size, 10, seed, 64)
+                .map(Master::formatTextMatrix)
+                .collect(Collectors.joining("\\"));
+    }
+
+    static double percentileMs(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))] / 1e6;
+    }
+
+    // Speedup relative to the fewest-workers run with the same size, tile, cutoff and clients
+    private static void computeSpeedups(List<Result> results) {
+        Map<String, Result> baseline = new HashMap<>();
+        for (Result r : results) {
+            String key = r.size + "/" + r.tileRows + "/" + r.strassen + "/" + r.clients;
+            Result b = baseline.get(key);
+            if (b == null || r.workers < b.workers) baseline.put(key, r);
+        }
+        for (Result r : results) {
+            Result b = baseline.get(r.size + "/" + r.tileRows + "/" + r.strassen + "/" + r.clients);
+            r.speedup = r.throughput / b.throughput;
+        }
+    }
+
+    private static void writeCsv(List<Result> results, String path) throws IOException {
+        try (PrintWriter w = new PrintWriter(new FileWriter(path))) {
+            w.println("workers,size,tile_rows,strassen_cutoff,clients,requests,throughput_rps,p50_ms,p99_ms,p999_ms,"
+                    + "speedup");
+            for (Result r : results) {
+                w.printf(Locale.ROOT, "%d,%d,%d,%d,%d,%d,%.2f,%.3f,%.3f,%.3f,%.3f%n", r.workers, r.size, r.tileRows,
+                        r.strassen, r.clients, r.requests, r.throughput, r.p50, r.p99, r.p999, r.speedup);
+            }
+        }
+    }
+
+    private static int[] ints(String csv) {
+        return Arrays.stream(csv.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+}
@@ -11,24 +11,42 @@ public class DistributedSystemRunner {
     private int masterPort;
     private List<String> workerIds;
     private ProcessLauncher launcher;
-    private Socket masterSocket;
-    private BufferedReader masterReader;
-    private PrintWriter masterWriter;
+    private RpcClient rpc;
+    private boolean standby;
+    private Process masterProcess;
     private String runtimeToken;
     private Map<String, Long> taskTimings = new ConcurrentHashMap<>();
-    private Map<String, String> taskResults = new ConcurrentHashMap<>();
     private List<String> logs = new CopyOnWriteArrayList<>();
 
     public DistributedSystemRunner(int masterPort, List<String> workerIds) {
+        this(masterPort, workerIds, new ProcessLauncher());
+    }
+
+    public DistributedSystemRunner(int masterPort, List<String> workerIds, ProcessLauncher launcher) {
         this.masterPort = masterPort;
         this.workerIds = new ArrayList<>(workerIds);
-        this.launcher = new ProcessLauncher();
+        this.launcher = launcher;
+    }
+
+    // Extra client connection to an already running Master (no processes launched)
+    public static DistributedSystemRunner attach(int masterPort) throws Exception {
+        DistributedSystemRunner client = new DistributedSystemRunner(masterPort, Collections.emptyList());
+        client.connectToMaster();
+        return client;
+    }
+
+    // Also launch a standby Master (see pdc.Standby) that takes over when the primary dies
+    public void enableStandby() {
+        this.standby = true;
     }
 
     public void start() throws Exception {
         log("Starting distributed system with " + workerIds.size() + " workers on port " + masterPort);
 
-        launcher.launchMaster(masterPort);
+        masterProcess = launcher.launchMaster(masterPort);
+        if (standby) {
+            launcher.launchStandby(masterPort);
+        }
 
         for (String workerId : workerIds) {
             launcher.launchWorker(workerId, "localhost", masterPort);
@@ -39,59 +57,23 @@ public class DistributedSystemRunner {
     }
 
     private void connectToMaster() throws Exception {
-        masterSocket = new Socket("localhost", masterPort);
-        masterReader = new BufferedReader(new InputStreamReader(masterSocket.getInputStream(), StandardCharsets.UTF_8));
-        masterWriter = new PrintWriter(new OutputStreamWriter(masterSocket.getOutputStream(), StandardCharsets.UTF_8),
-                true);
-
-        startResponseListener();
+        // One connection, so each runner is one client to Master's per-client admission limit
+        rpc = new RpcClient("localhost", masterPort, 1);
         log("Connected to master on port " + masterPort);
     }
 
-    private void startResponseListener() {
-        Thread listener = new Thread(() -> {
-            try {
-                String line;
-                while ((line = masterReader.readLine()) != null) {
-                    Message msg = Message.parse(line);
-
-                    if ("TASK_COMPLETE".equals(msg.messageType)) {
-                        String[] parts = msg.payload.split(";");
-                        String taskId = parts[0];
-                        String result = msg.payload.substring(taskId.length() + 1);
-                        taskResults.put(taskId, result);
-                        taskTimings.put(taskId, System.currentTimeMillis());
-                        log("Task completed: " + taskId);
-                    }
-                }
-            } catch (Exception e) {
-                log("Listener error: " + e.getMessage());
-            }
-        });
-        listener.setDaemon(true);
-        listener.start();
-    }
-
     public String executeTask(String taskId, String taskType, String payload) throws Exception {
         log("Executing task " + taskId + " type=" + taskType);
         taskTimings.put(taskId, System.currentTimeMillis());
-
-        Message req = new Message();
-        req.messageType = "RPC_REQUEST";
-        req.payload = taskId + ";" + taskType + ";" + payload;
-        masterWriter.println(req.toJson());
-
-        long startTime = System.currentTimeMillis();
-        while (!taskResults.containsKey(taskId)) {
-            if (System.currentTimeMillis() - startTime > 30000) {
-                throw new TimeoutException("Task timeout: " + taskId);
-            }
-            Thread.sleep(100);
+        try {
+            String result = rpc.submit(new RpcClient.Job(taskType, payload).id(taskId)).get().text;
+            log("Task completed: " + taskId);
+            return result;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            taskTimings.put(taskId, System.currentTimeMillis());
         }
-
-        String result = taskResults.get(taskId);
-        taskResults.remove(taskId);
-        return result;
     }
 
     public int getWorkerCount() throws Exception {
@@ -113,12 +95,17 @@ public class DistributedSystemRunner {
         Thread.sleep(1000);
     }
 
+    // Kills only the primary Master process, leaving Workers and any standby running
+    public void killMaster() throws Exception {
+        log("Killing master");
+        masterProcess.destroyForcibly();
+        masterProcess.waitFor();
+    }
+
     public void shutdown() throws Exception {
         log("Shutting down system");
-        try {
-            masterSocket.close();
-        } catch (Exception e) {
-            // ignore
+        if (rpc != null) {
+            rpc.close();
         }
         launcher.killAll();
     }
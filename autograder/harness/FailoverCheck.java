@@ -0,0 +1,71 @@
+package pdc;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Failover check on top of DistributedSystemRunner: starts a Master, a standby Master
+ * and Workers as separate processes, kills the primary while a MATRIX_MULTIPLY job is
+ * in flight, and checks that the job still returns the right product once the standby
+ * has taken over the port. Prints the time from the kill to the answer.
+ *
+ * Usage: java -cp build/classes/java/main:autograder-classes pdc.FailoverCheck
+ *            [workers=2] [size=256] [killAfterMs=300] [port=9750]
+ */
+public class FailoverCheck {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        int workers = Integer.parseInt(opts.getOrDefault("workers", "2"));
+        int size = Integer.parseInt(opts.getOrDefault("size", "256"));
+        long killAfterMs = Long.parseLong(opts.getOrDefault("killAfterMs", "300"));
+        int port = Integer.parseInt(opts.getOrDefault("port", "9750"));
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < workers; i++) ids.add("failover-worker-" + i);
+        ProcessLauncher launcher = new ProcessLauncher();
+        launcher.useClasses("pdc.Master", "pdc.Worker");
+        launcher.setEnv("LOG_LEVEL", "WARN");
+        DistributedSystemRunner runner = new DistributedSystemRunner(port, ids, launcher);
+        runner.enableStandby();
+
+        int[][] a = MatrixGenerator.generateRandomMatrix(size, size, 10);
+        int[][] b = MatrixGenerator.generateRandomMatrix(size, size, 10);
+        String payload = Master.formatTextMatrix(a) + "|" + Master.formatTextMatrix(b);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        boolean ok = false;
+        try {
+            runner.start();
+            runner.executeTask("warmup", "MATRIX_MULTIPLY", payload);
+
+            Future<String> job = pool.submit(() -> runner.executeTask("failover-1", "MATRIX_MULTIPLY", payload));
+            Thread.sleep(killAfterMs);
+            long killed = System.nanoTime();
+            runner.killMaster();
+            String result = job.get(30, TimeUnit.SECONDS);
+            long recoveredMs = (System.nanoTime() - killed) / 1_000_000;
+
+            ok = Arrays.deepEquals(Master.parseTextMatrix(result), multiply(a, b));
+            System.out.println("[Failover] " + (ok ? "PASS" : "FAIL: wrong product") + ", answered " + recoveredMs
+                    + " ms after the primary was killed");
+        } finally {
+            pool.shutdownNow();
+            runner.shutdown();
+        }
+        if (!ok) System.exit(1);
+    }
+
+    private static int[][] multiply(int[][] a, int[][] b) {
+        int[][] c = new int[a.length][b[0].length];
+        for (int i = 0; i < a.length; i++) {
+            for (int k = 0; k < b.length; k++) {
+                for (int j = 0; j < b[0].length; j++) c[i][j] += a[i][k] * b[k][j];
+            }
+        }
+        return c;
+    }
+}
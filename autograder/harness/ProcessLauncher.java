@@ -8,17 +8,26 @@ import java.util.concurrent.*;
 
 public class ProcessLauncher {
     private List<Process> processes = new CopyOnWriteArrayList<>();
+    private String masterClass = "pdc.ReferenceMaster";
+    private String workerClass = "pdc.ReferenceWorker";
+    private Map<String, String> extraEnv = new ConcurrentHashMap<>();
+
+    // Launch other main classes, e.g. pdc.Master / pdc.Worker for benchmarking
+    public void useClasses(String masterClass, String workerClass) {
+        this.masterClass = masterClass;
+        this.workerClass = workerClass;
+    }
 
-    public Process launchMaster(int port) throws IOException {
-        String[] cmd = {
-                "java",
-                "-cp", getClasspath(),
-                "pdc.ReferenceMaster"
-        };
+    // Extra environment for every process launched afterwards
+    public void setEnv(String name, String value) {
+        extraEnv.put(name, value);
+    }
 
-        ProcessBuilder pb = new ProcessBuilder(cmd);
+    public Process launchMaster(int port) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(javaCommand(masterClass));
         pb.environment().put("MASTER_PORT", String.valueOf(port));
         pb.environment().put("STUDENT_ID", "autograder");
+        pb.environment().putAll(extraEnv);
         pb.redirectErrorStream(true);
 
         Process p = pb.start();
@@ -33,18 +42,27 @@ public class ProcessLauncher {
         return p;
     }
 
-    public Process launchWorker(String workerId, String masterHost, int masterPort) throws IOException {
-        String[] cmd = {
-                "java",
-                "-cp", getClasspath(),
-                "pdc.ReferenceWorker"
-        };
+    // Standby Master on the same port; takes it over when the primary dies
+    public Process launchStandby(int port) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(javaCommand(masterClass));
+        pb.environment().put("MASTER_PORT", String.valueOf(port));
+        pb.environment().put("MASTER_STANDBY_OF", "localhost");
+        pb.environment().put("STUDENT_ID", "autograder");
+        pb.environment().putAll(extraEnv);
+        pb.redirectErrorStream(true);
 
-        ProcessBuilder pb = new ProcessBuilder(cmd);
+        Process p = pb.start();
+        processes.add(p);
+        return p;
+    }
+
+    public Process launchWorker(String workerId, String masterHost, int masterPort) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(javaCommand(workerClass));
         pb.environment().put("WORKER_ID", workerId);
         pb.environment().put("MASTER_HOST", masterHost);
         pb.environment().put("MASTER_PORT", String.valueOf(masterPort));
         pb.environment().put("STUDENT_ID", "autograder");
+        pb.environment().putAll(extraEnv);
         pb.redirectErrorStream(true);
 
         Process p = pb.start();
@@ -59,6 +77,10 @@ public class ProcessLauncher {
         return p;
     }
 
+    public List<Process> getProcesses() {
+        return new ArrayList<>(processes);
+    }
+
     public void killAll() {
         for (Process p : processes) {
             try {
@@ -70,6 +92,16 @@ public class ProcessLauncher {
         processes.clear();
     }
 
+    // Children get the Vector API module whenever this JVM has it, so Workers can use SIMD kernels
+    private static List<String> javaCommand(String mainClass) {
+        List<String> cmd = new ArrayList<>(Arrays.asList("java", "-cp", getClasspath()));
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            cmd.addAll(Arrays.asList("--add-modules", "jdk.incubator.vector"));
+        }
+        cmd.add(mainClass);
+        return cmd;
+    }
+
     public static String getClasspath() {
         return ".:" + System.getProperty("java.class.path");
     }
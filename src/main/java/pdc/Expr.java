@@ -0,0 +1,103 @@
+package pdc;
+
+/**
+ * Lazy matrix expression. Building an Expr only records the operation and checks
+ * shapes; nothing runs until Master.evaluate walks the resulting DAG. Reusing the
+ * same Expr object in several places shares its result instead of recomputing it.
+ */
+public class Expr {
+
+    public static final String LEAF = "LEAF";
+    public static final String MATMUL = "MATMUL";
+    public static final String ADD = "ADD";
+    public static final String SCALE = "SCALE";
+    public static final String TRANSPOSE = "TRANSPOSE";
+    public static final String ROW_SUM = "ROW_SUM";
+    public static final String COL_SUM = "COL_SUM";
+    public static final String TOTAL_SUM = "TOTAL_SUM";
+
+    final String op;
+    final Expr left;
+    final Expr right;
+    final int[][] value;     // LEAF only
+    final int scalar;        // SCALE only
+    final int rows;
+    final int cols;
+
+    private Expr(String op, Expr left, Expr right, int[][] value, int scalar, int rows, int cols) {
+        this.op = op;
+        this.left = left;
+        this.right = right;
+        this.value = value;
+        this.scalar = scalar;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Wraps a materialized matrix as an expression leaf.
+     *
+     * @param matrix a non-empty rectangular matrix
+     * @return the leaf expression
+     */
+    public static Expr of(int[][] matrix) {
+        if (matrix == null || matrix.length == 0) {
+            throw new IllegalArgumentException("Expression leaves must be non-empty");
+        }
+        return new Expr(LEAF, null, null, matrix, 0, matrix.length, matrix[0].length);
+    }
+
+    public Expr matmul(Expr b) {
+        if (cols != b.rows) {
+            throw new IllegalArgumentException("Inner dimensions differ: " + cols + " vs " + b.rows);
+        }
+        return new Expr(MATMUL, this, b, null, 0, rows, b.cols);
+    }
+
+    public Expr add(Expr b) {
+        if (rows != b.rows || cols != b.cols) {
+            throw new IllegalArgumentException("ADD needs equal shapes");
+        }
+        return new Expr(ADD, this, b, null, 0, rows, cols);
+    }
+
+    public Expr scale(int k) {
+        return new Expr(SCALE, this, null, null, k, rows, cols);
+    }
+
+    public Expr transpose() {
+        return new Expr(TRANSPOSE, this, null, null, 0, cols, rows);
+    }
+
+    public Expr rowSum() {
+        return new Expr(ROW_SUM, this, null, null, 0, rows, 1);
+    }
+
+    public Expr colSum() {
+        return new Expr(COL_SUM, this, null, null, 0, 1, cols);
+    }
+
+    public Expr totalSum() {
+        return new Expr(TOTAL_SUM, this, null, null, 0, 1, 1);
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    /**
+     * Row-local ops produce row block k of their output from row block k of their
+     * chained input alone, so they can be appended to the task that produces it.
+     */
+    boolean isRowLocal() {
+        return MATMUL.equals(op) || ADD.equals(op) || SCALE.equals(op) || ROW_SUM.equals(op);
+    }
+
+    boolean isReduction() {
+        return COL_SUM.equals(op) || TOTAL_SUM.equals(op);
+    }
+}
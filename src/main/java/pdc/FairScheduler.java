@@ -0,0 +1,238 @@
+package pdc;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Task queue shared by all tenants, bucketed by priority. A higher band is always
+ * served before a lower one. Within a band tenants take turns by deficit round-robin:
+ * each turn adds QUANTUM x weight bytes of credit and the tenant is served while its
+ * head task's cost fits. Within a tenant, jobs are served earliest-deadline-first and
+ * round-robin among equal deadlines, so one big job cannot starve a small one. A
+ * tenant at its in-flight limit is skipped until release() frees a slot, and tasks
+ * whose deadline has passed are failed instead of dispatched. put() blocks while
+ * capacity tasks are queued; offer() never blocks and is meant for requeues.
+ */
+public class FairScheduler {
+
+    static final long QUANTUM = 64 * 1024;
+    static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
+    // Limits and accounting shared by all of a tenant's bands
+    static class TenantState {
+        int weight = 1;
+        int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        int inFlight = 0;
+    }
+
+    static class JobQueue {
+        final int jobId;
+        final long deadline;              // 0 = none
+        long turn;                        // last time served, for round-robin on ties
+        final ArrayDeque<Master.Task> tasks = new ArrayDeque<>();
+        JobQueue(int jobId, long deadline) { this.jobId = jobId; this.deadline = deadline; }
+    }
+
+    private static final Comparator<JobQueue> EDF = Comparator
+            .comparingLong((JobQueue j) -> j.deadline == 0 ? Long.MAX_VALUE : j.deadline)
+            .thenComparingLong(j -> j.turn);
+
+    // One tenant's queued work within one priority band
+    static class TenantQueue {
+        final TenantState state;
+        long deficit = 0;
+        boolean granted = false;          // received this round's quantum
+        final PriorityQueue<JobQueue> jobs = new PriorityQueue<>(EDF);
+        final Map<Integer, JobQueue> byJob = new HashMap<>();
+        TenantQueue(TenantState state) { this.state = state; }
+    }
+
+    static class Band {
+        final Map<String, TenantQueue> tenants = new HashMap<>();
+        final ArrayDeque<TenantQueue> active = new ArrayDeque<>();
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final int capacity;
+    private final Map<String, TenantState> tenants = new HashMap<>();
+    private final TreeMap<Integer, Band> bands = new TreeMap<>(Comparator.reverseOrder());
+    private long turns = 0;
+    private int size = 0;
+
+    public FairScheduler() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public FairScheduler(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Sets a tenant's share of dispatch bandwidth and its concurrency limit.
+     */
+    public void configure(String tenant, int weight, int maxInFlight) {
+        lock.lock();
+        try {
+            TenantState ts = tenant(tenant);
+            ts.weight = Math.max(1, weight);
+            ts.maxInFlight = Math.max(1, maxInFlight);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues t, waiting while the queue holds capacity tasks.
+     */
+    public void put(Master.Task t) throws InterruptedException {
+        lock.lock();
+        try {
+            while (size >= capacity) {
+                notFull.await();
+            }
+            offer(t);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void offer(Master.Task t) {
+        lock.lock();
+        try {
+            Band band = bands.computeIfAbsent(t.priority, p -> new Band());
+            String name = t.tenant != null ? t.tenant : "";
+            TenantQueue tq = band.tenants.computeIfAbsent(name, n -> new TenantQueue(tenant(n)));
+            JobQueue job = tq.byJob.get(t.jobId);
+            if (job == null) {
+                job = new JobQueue(t.jobId, t.deadline);
+                tq.byJob.put(t.jobId, job);
+                job.tasks.addLast(t);
+                tq.jobs.add(job);
+            } else {
+                job.tasks.addLast(t);
+            }
+            if (tq.jobs.size() == 1 && job.tasks.size() == 1) band.active.addLast(tq);
+            size++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next task in priority and fair order, waiting up to timeout. The task
+     * holds one of its tenant's in-flight slots until release() is called for it.
+     */
+    public Master.Task poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (true) {
+                boolean creditShort = false;
+                Master.Task t = null;
+                for (Band band : bands.values()) {
+                    for (int scan = band.active.size(); scan > 0; scan--) {
+                        TenantQueue tq = band.active.peekFirst();
+                        if (tq.state.inFlight < tq.state.maxInFlight) {
+                            if (!tq.granted) {
+                                tq.deficit += QUANTUM * tq.state.weight;
+                                tq.granted = true;
+                            }
+                            if (cost(tq.jobs.peek().tasks.peekFirst()) <= tq.deficit) {
+                                t = take(band, tq);
+                                break;
+                            }
+                            creditShort = true;
+                        }
+                        // Turn over: move to the back of the ring
+                        tq.granted = false;
+                        band.active.addLast(band.active.pollFirst());
+                    }
+                    if (t != null || creditShort) break;   // lower bands wait for this one
+                }
+                if (t != null) {
+                    if (t.deadline != 0 && t.deadline < System.currentTimeMillis()) {
+                        expire(t);
+                        continue;
+                    }
+                    return t;
+                }
+                if (creditShort) continue;   // deficits grew; another round will serve someone
+                if (nanos <= 0) return null;
+                nanos = changed.awaitNanos(nanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Frees the tenant slot held by t; safe to call more than once
+    public void release(Master.Task t) {
+        lock.lock();
+        try {
+            if (!t.holdsSlot) return;
+            t.holdsSlot = false;
+            tenant(t.tenant).inFlight--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Master.Task take(Band band, TenantQueue tq) {
+        JobQueue job = tq.jobs.poll();
+        Master.Task t = job.tasks.pollFirst();
+        if (job.tasks.isEmpty()) {
+            tq.byJob.remove(job.jobId);
+        } else {
+            job.turn = ++turns;               // round-robin among jobs with the same deadline
+            tq.jobs.add(job);
+        }
+        tq.deficit -= cost(t);
+        if (tq.jobs.isEmpty()) {
+            band.active.remove(tq);
+            tq.deficit = 0;
+            tq.granted = false;
+        }
+        tq.state.inFlight++;
+        t.holdsSlot = true;
+        size--;
+        notFull.signal();
+        return t;
+    }
+
+    // Called with the lock held: the slot take() assigned is returned directly
+    private void expire(Master.Task t) {
+        t.holdsSlot = false;
+        tenant(t.tenant).inFlight--;
+        t.result.completeExceptionally(new TimeoutException("Task " + t.taskId + " missed its deadline"));
+    }
+
+    private TenantState tenant(String name) {
+        return tenants.computeIfAbsent(name != null ? name : "", n -> new TenantState());
+    }
+
+    // Dispatch cost in bytes; shared operands are excluded since they are usually cached
+    private static long cost(Master.Task t) {
+        return 64 + (t.payload != null ? t.payload.length() : 0);
+    }
+}
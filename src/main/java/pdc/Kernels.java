@@ -0,0 +1,122 @@
+package pdc;
+
+/**
+ * Inner loops of the dense tile kernels. This class is the scalar version;
+ * VectorKernels (src/simd/java, built against jdk.incubator.vector) overrides them
+ * with SIMD code sized to the CPU's preferred vector length. INSTANCE is the vector
+ * version when that class and module are both present, otherwise this one, so the
+ * same results come out either way. WORKER_SIMD=off forces scalar.
+ */
+class Kernels {
+
+    static final Kernels INSTANCE = load();
+    static final int SCORE_MS = 40;
+
+    /**
+     * c += a * b for dense tiles (n x inner times inner x m into n x m).
+     */
+    void multiplyAccumulate(int[][] a, int[][] b, int[][] c) {
+        int inner = b.length;
+        int m = inner > 0 ? b[0].length : 0;
+        if (m < lanes() && inner >= lanes()) {
+            multiplyNarrow(a, b, c);
+            return;
+        }
+        // i-k-j order so the inner loop streams rows of b and c
+        for (int i = 0; i < a.length; i++) {
+            int[] ai = a[i];
+            int[] ci = c[i];
+            for (int k = 0; k < inner; k++) {
+                if (ai[k] != 0) axpy(ci, ai[k], b[k], m);
+            }
+        }
+    }
+
+    // Few output columns (e.g. matrix x vector) leave axpy no room to vectorize;
+    // take dot products against the columns of b instead
+    final void multiplyNarrow(int[][] a, int[][] b, int[][] c) {
+        int inner = b.length;
+        int[][] bt = Worker.transpose(b);
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < bt.length; j++) {
+                c[i][j] += dot(a[i], bt[j], inner);
+            }
+        }
+    }
+
+    /**
+     * c += a * b over k in [k0, k1), accumulating in long. Each int product fits in a
+     * long, so c is exact as long as the sums themselves fit.
+     */
+    void multiplyAccumulate(int[][] a, int[][] b, long[][] c, int k0, int k1) {
+        int m = b.length > 0 ? b[0].length : 0;
+        for (int i = 0; i < a.length; i++) {
+            int[] ai = a[i];
+            long[] ci = c[i];
+            for (int k = k0; k < k1; k++) {
+                long aik = ai[k];
+                if (aik == 0) continue;
+                int[] bk = b[k];
+                for (int j = 0; j < m; j++) {
+                    ci[j] += aik * bk[j];
+                }
+            }
+        }
+    }
+
+    // c[j] += s * b[j] for j < n
+    void axpy(int[] c, int s, int[] b, int n) {
+        for (int j = 0; j < n; j++) {
+            c[j] += s * b[j];
+        }
+    }
+
+    // Sum of a[j] * b[j] for j < n, wrapping like int arithmetic
+    int dot(int[] a, int[] b, int n) {
+        int s = 0;
+        for (int j = 0; j < n; j++) {
+            s += a[j] * b[j];
+        }
+        return s;
+    }
+
+    // Ints per vector register; 1 for scalar code
+    int lanes() {
+        return 1;
+    }
+
+    String name() {
+        return "scalar";
+    }
+
+    /**
+     * Single-thread speed in multiply-adds per microsecond, from about SCORE_MS of
+     * 64x64 tile products after a warmup. Workers report it at registration.
+     */
+    double score() {
+        int n = 64;
+        int[][] a = MatrixGenerator.generateRandomMatrix(n, n, 100);
+        int[][] b = MatrixGenerator.generateRandomMatrix(n, n, 100);
+        int[][] c = new int[n][n];
+        long warmupEnd = System.nanoTime() + SCORE_MS * 1_000_000L / 2;
+        while (System.nanoTime() < warmupEnd) multiplyAccumulate(a, b, c);
+        long reps = 0;
+        long t0 = System.nanoTime();
+        long elapsed;
+        do {
+            multiplyAccumulate(a, b, c);
+            reps++;
+        } while ((elapsed = System.nanoTime() - t0) < SCORE_MS * 1_000_000L);
+        return reps * n * n * n / (elapsed / 1000.0);
+    }
+
+    static Kernels load() {
+        if ("off".equalsIgnoreCase(System.getenv("WORKER_SIMD"))) return new Kernels();
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) return new Kernels();
+        try {
+            return (Kernels) Class.forName("pdc.VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new Kernels();   // built without the simd source set
+        }
+    }
+}
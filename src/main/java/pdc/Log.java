@@ -0,0 +1,196 @@
+package pdc;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous logger. Callers claim a slot in a bounded lock-free ring, store the
+ * level, template and arguments, and return; one daemon thread formats the "{}"
+ * placeholders and writes whole batches to System.out (WARN and ERROR to
+ * System.err). A disabled level costs one volatile read. Levels are per component,
+ * from LOG_LEVEL and LOG_LEVEL_&lt;COMPONENT&gt; (e.g. LOG_LEVEL_WORKER=DEBUG) or
+ * setLevel(). When the ring is full a record is dropped and counted in log.dropped
+ * rather than blocking the caller.
+ */
+public final class Log {
+
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int ERROR = 3;
+    public static final int OFF = 4;
+    private static final String[] NAMES = { "DEBUG", "INFO", "WARN", "ERROR", "OFF" };
+
+    static final int RING_SIZE = 8192;   // power of two
+
+    private static final class Record {
+        volatile long seq = -1;          // ring index this slot was last published for
+        Log log;
+        int level;
+        String template;
+        Object a, b, c;
+    }
+
+    private static final Record[] ring = new Record[RING_SIZE];
+    private static final AtomicLong head = new AtomicLong();   // next index to claim
+    private static volatile long tail = 0;                     // next index to write out
+    private static final ConcurrentHashMap<String, AtomicInteger> levels = new ConcurrentHashMap<>();
+    private static final Thread flusher;
+
+    static {
+        for (int i = 0; i < RING_SIZE; i++) ring[i] = new Record();
+        flusher = new Thread(Log::flushLoop, "log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000)));
+    }
+
+    private final String prefix;
+    private final AtomicInteger level;
+
+    private Log(String component, String prefix) {
+        this.prefix = "[" + prefix + "] ";
+        this.level = levels.computeIfAbsent(component.toUpperCase(Locale.ROOT), Log::initialLevel);
+    }
+
+    public static Log get(String component) {
+        return new Log(component, component);
+    }
+
+    /**
+     * A logger whose level follows component but whose lines start with prefix,
+     * e.g. component "Worker" with prefix "Worker w1".
+     */
+    public static Log get(String component, String prefix) {
+        return new Log(component, prefix);
+    }
+
+    public static void setLevel(String component, int level) {
+        levels.computeIfAbsent(component.toUpperCase(Locale.ROOT), Log::initialLevel).set(level);
+    }
+
+    public boolean isEnabled(int lvl) {
+        return lvl >= level.get();
+    }
+
+    public void debug(String template) { log(DEBUG, template, null, null, null); }
+    public void debug(String template, Object a) { log(DEBUG, template, a, null, null); }
+    public void debug(String template, Object a, Object b) { log(DEBUG, template, a, b, null); }
+    public void debug(String template, Object a, Object b, Object c) { log(DEBUG, template, a, b, c); }
+
+    public void info(String template) { log(INFO, template, null, null, null); }
+    public void info(String template, Object a) { log(INFO, template, a, null, null); }
+    public void info(String template, Object a, Object b) { log(INFO, template, a, b, null); }
+    public void info(String template, Object a, Object b, Object c) { log(INFO, template, a, b, c); }
+
+    public void warn(String template) { log(WARN, template, null, null, null); }
+    public void warn(String template, Object a) { log(WARN, template, a, null, null); }
+    public void warn(String template, Object a, Object b) { log(WARN, template, a, b, null); }
+
+    public void error(String template) { log(ERROR, template, null, null, null); }
+    public void error(String template, Object a) { log(ERROR, template, a, null, null); }
+    public void error(String template, Object a, Object b) { log(ERROR, template, a, b, null); }
+
+    /**
+     * Queues one record; formatting happens later on the flusher thread, so
+     * arguments should not be mutated after the call.
+     */
+    public void log(int lvl, String template, Object a, Object b, Object c) {
+        if (lvl < level.get()) return;
+        long h;
+        do {
+            h = head.get();
+            if (h - tail >= RING_SIZE) {
+                Metrics.counter("log.dropped").increment();
+                return;
+            }
+        } while (!head.compareAndSet(h, h + 1));
+
+        Record r = ring[(int) h & (RING_SIZE - 1)];
+        r.log = this;
+        r.level = lvl;
+        r.template = template;
+        r.a = a;
+        r.b = b;
+        r.c = c;
+        r.seq = h;                                 // publish
+        if (h == tail) LockSupport.unpark(flusher);   // ring was empty; flusher may be parked
+    }
+
+    /**
+     * Waits up to timeoutMs for every record queued so far to be written.
+     */
+    public static void flush(long timeoutMs) {
+        long target = head.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (tail < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(flusher);
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    private static void flushLoop() {
+        StringBuilder out = new StringBuilder();
+        StringBuilder err = new StringBuilder();
+        while (true) {
+            long t = tail;
+            Record r = ring[(int) t & (RING_SIZE - 1)];
+            if (r.seq != t) {
+                write(System.out, out);
+                write(System.err, err);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                continue;
+            }
+            StringBuilder sb = r.level >= WARN ? err : out;
+            sb.append(r.log.prefix);
+            format(sb, r.template, r.a, r.b, r.c);
+            sb.append(System.lineSeparator());
+            r.log = null;
+            r.template = null;
+            r.a = r.b = r.c = null;
+            tail = t + 1;                          // slot may now be reused
+            if (out.length() + err.length() > 64 * 1024) {
+                write(System.out, out);
+                write(System.err, err);
+            }
+        }
+    }
+
+    private static void write(PrintStream stream, StringBuilder sb) {
+        if (sb.length() == 0) return;
+        stream.print(sb);
+        stream.flush();
+        sb.setLength(0);
+    }
+
+    // Replaces each "{}" in template with the next argument
+    static void format(StringBuilder sb, String template, Object a, Object b, Object c) {
+        int arg = 0;
+        int from = 0;
+        int at;
+        while (arg < 3 && (at = template.indexOf("{}", from)) >= 0) {
+            sb.append(template, from, at).append(arg == 0 ? a : arg == 1 ? b : c);
+            from = at + 2;
+            arg++;
+        }
+        sb.append(template, from, template.length());
+    }
+
+    private static AtomicInteger initialLevel(String component) {
+        String v = System.getenv("LOG_LEVEL_" + component);
+        if (v == null) v = System.getenv("LOG_LEVEL");
+        return new AtomicInteger(v != null ? parseLevel(v) : INFO);
+    }
+
+    static int parseLevel(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equalsIgnoreCase(name.trim())) return i;
+        }
+        return INFO;
+    }
+}
@@ -1,25 +1,85 @@
 package pdc;
 
+import com.sun.net.httpserver.HttpServer;
+
 import java.io.*;
 import java.net.*;
+import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Master coordinator using JSON protocol over sockets
  */
 public class Master {
 
+    private static final Log log = Log.get("Master");
+
+    // Operands at or below this fraction of non-zeros travel and multiply as CSR
+    static final double SPARSE_DENSITY = 0.1;
+    static final long TASK_TIMEOUT_MS = 30000;
+    // Partial results combined per task at each level of a reduction tree
+    static final int REDUCE_FAN_IN = 4;
+    // Placement: assumed link speed for operand transfer, and how long a task may wait
+    // for a Worker that already holds its operands
+    static final double BYTES_PER_MS = 10_000;
+    static final long LOCALITY_WAIT_MS = 50;
+    static final int MAX_PRIORITY = 9;
+    // Admission control defaults: queued tile tasks, and concurrent jobs per RPC client
+    static final int MAX_QUEUED_TASKS = 10_000;
+    static final int MAX_CLIENT_JOBS = 16;
+    // Flow-control window assumed for Workers that do not advertise credits
+    static final int DEFAULT_CREDIT_TASKS = 4;
+    static final long DEFAULT_CREDIT_BYTES = 32L * 1024 * 1024;
+    // How long a dropped Worker's tasks and resident tiles wait for it to resume its session
+    static final int RESUME_GRACE_MS = 3000;
+    static final int REPLICATION_HEARTBEAT_MS = 200;
+    static final int TASK_ID_BLOCK = 4096;   // task ids reserved (and replicated) per block
+    // Rows per tile task; 0 picks two tiles per Worker core (see Client.slots)
+    static final int TILE_ROWS = envInt("MASTER_TILE_ROWS", 0);
+    static final int MIN_TILE_ROWS = 8;   // automatic tiles stay at least this tall
+    static final int MAX_REEXECUTIONS = 2;   // per MATMUL, when verification keeps failing
+    // Types counted by name in master.messages_in.*; anything else a client sends is "other"
+    static final Set<String> INBOUND_TYPES = new HashSet<>(Arrays.asList("RPC_REQUEST", "REGISTER_WORKER",
+            "TASK_COMPLETE", "TASK_ERROR", "HEARTBEAT_ACK", "METRICS", "STANDBY"));
+
     private int port;
     private ServerSocket serverSocket;
     private ConcurrentHashMap<Integer, Client> clients = new ConcurrentHashMap<>();
     private int clientIdCounter = 0;
     private ExecutorService threadPool;
-    private BlockingQueue<Task> taskQueue = new LinkedBlockingQueue<>();
-    private ConcurrentHashMap<Integer, Task> activeTasks = new ConcurrentHashMap<>();
+    private ExecutorService computePool;     // runs tile tasks locally when no Worker is registered
+    private HttpServer metricsServer;   // MASTER_METRICS_PORT, null when disabled
+    private final FairScheduler taskQueue;    // bounded per-tenant, per-job fair queue
+    private final int maxClientJobs;
+    final ConcurrentHashMap<Integer, Task> activeTasks = new ConcurrentHashMap<>();
+    // Worker sessions by token -> the connection currently holding it; a dropped one stays
+    // here for resumeGraceMs so a reconnecting Worker keeps its tasks and cached tiles
+    private final ConcurrentHashMap<String, Client> sessions = new ConcurrentHashMap<>();
+    private final int resumeGraceMs;
+    private static final SecureRandom tokens = new SecureRandom();
+    // Hot standby (see Standby): subscribed standbys receive the task id reservation and
+    // every admitted RPC job until it is answered, so one can take over if this process dies
+    private final List<Client> standbys = new CopyOnWriteArrayList<>();
+    private final Object replicationLock = new Object();
+    private final Map<String, String> admittedJobs = new LinkedHashMap<>();   // "tenant;taskId" -> job, by replicationLock
+    private volatile int reservedTaskIds;
+    // Jobs a standby re-ran on takeover, answered when their clients resend them
+    private final ConcurrentHashMap<String, CompletableFuture<String>> recoveredJobs = new ConcurrentHashMap<>();
     private int taskIdCounter = 0;
+    private int jobIdCounter = 0;
     private String studentId;
     private volatile boolean running = false;
+    private volatile boolean dispatching = false;   // dispatcher thread started
+    private final Object creditSignal = new Object();   // notified when a Worker frees credit
+    private volatile TileCache memo;          // memoized tile results, null when disabled
+    private volatile int strassenCutoff;      // Strassen-Winograd leaf size, 0 when disabled
+    private volatile int verifyRounds;        // Freivalds rounds per MATMUL, 0 when disabled
+    private final ThreadLocal<Job> submission = new ThreadLocal<>();   // tenant, priority, deadline from submitAs
+    private final ThreadLocal<Job> currentJob = new ThreadLocal<>();
 
     static class Client {
         int id;
@@ -27,14 +87,106 @@ public class Master {
         PrintWriter out;
         boolean alive = true;
         long lastHeartbeat = System.currentTimeMillis();
-        Client(int id, Socket socket) { this.id = id; this.socket = socket; }
+        String workerId;                  // set by REGISTER_WORKER
+        volatile String session;          // resumption token issued at registration
+        volatile boolean compress;        // negotiated at registration
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicLong inFlightBytes = new AtomicLong();
+        volatile int creditTasks = DEFAULT_CREDIT_TASKS;      // advertised at registration
+        volatile long creditBytes = DEFAULT_CREDIT_BYTES;
+        final Set<String> residentTiles = ConcurrentHashMap.newKeySet();   // operand keys sent with #key=
+        final AtomicInteger activeJobs = new AtomicInteger();   // admitted RPC jobs not yet answered
+        volatile double avgTaskMs = 10;   // EWMA of dispatch-to-result time
+        // Capabilities reported at registration; older Workers report none and count as one core
+        volatile int cores = 1;
+        volatile long maxHeap;
+        volatile double score;            // single-thread multiply-adds per microsecond, 0 if unknown
+        volatile Set<String> features = Collections.emptySet();
+        final LongAdder bytesIn;
+        final LongAdder bytesOut;
+        Client(int id, Socket socket) {
+            this.id = id;
+            this.socket = socket;
+            this.bytesIn = Metrics.counter("master.client." + id + ".bytes_in");
+            this.bytesOut = Metrics.counter("master.client." + id + ".bytes_out");
+        }
+
+        // Tasks the Worker computes at once
+        int slots() {
+            return Math.max(1, Math.min(cores, creditTasks));
+        }
+
+        // Within the Worker's credits; a lone task may exceed the byte window
+        boolean canAccept(long bytes) {
+            int n = inFlight.get();
+            return n < creditTasks && (n == 0 || inFlightBytes.get() + bytes <= creditBytes);
+        }
     }
 
     static class Task {
         int taskId;
-        String payload;
+        String payload;                   // "OP;arg;..." as understood by Worker.runTask
         long submittedTime;
+        volatile int assignedClient = -1;
+        long dispatchedTime;
+        long sentBytes;                   // charged against the Worker's byte credit
+        long queuedNanos;                 // for the queue-wait and round-trip histograms
+        long dispatchedNanos;
+        String trace;                     // tracing context sent with the task, null when tracing is off
+        long firstConsideredTime;         // start of the delay-scheduling window
+        long memoKey;                     // hash of op and operands, 0 if not memoizable
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        Map<String, String> refs = Collections.emptyMap();   // "@key" placeholders in payload -> tile
+        Set<Integer> avoid = Collections.emptySet();          // clients that returned a bad result for it
+        String tenant;                    // submitting studentId; scheduling is fair across tenants
+        int jobId;
+        int priority;                     // higher bands dispatch first
+        long deadline;                    // epoch ms the job's result is due, 0 = none
+        boolean holdsSlot;                // counts against its tenant's in-flight limit (FairScheduler)
         Task(int id, String p) { this.taskId = id; this.payload = p; this.submittedTime = System.currentTimeMillis(); }
+
+        // Payload for a Worker: cached operands stay "@key", others are sent once as "#key=<tile>"
+        String bodyFor(Client w) {
+            String body = payload;
+            for (Map.Entry<String, String> ref : refs.entrySet()) {
+                if (w.residentTiles.add(ref.getKey())) {
+                    body = body.replace("@" + ref.getKey(), "#" + ref.getKey() + "=" + ref.getValue());
+                }
+            }
+            return body;
+        }
+
+        // Operand bytes w would still need to receive for this task
+        long missingBytes(Client w) {
+            long missing = 0;
+            for (Map.Entry<String, String> ref : refs.entrySet()) {
+                if (!w.residentTiles.contains(ref.getKey())) missing += ref.getValue().length();
+            }
+            return missing;
+        }
+
+        // Payload for local execution, with every reference inlined
+        String inlineBody() {
+            String body = payload;
+            for (Map.Entry<String, String> ref : refs.entrySet()) {
+                body = body.replace("@" + ref.getKey(), ref.getValue());
+            }
+            return body;
+        }
+    }
+
+    // One public operation call; every tile task it creates shares the job id
+    static class Job {
+        final int jobId;
+        final String tenant;
+        final int priority;
+        final long deadline;
+        final long traceId = ThreadLocalRandom.current().nextLong();
+        final long startNanos = System.nanoTime();
+        volatile long lastResultNanos;    // when the final round of tasks completed; assembly follows
+        Job(int jobId, String tenant, int priority, long deadline) {
+            this.jobId = jobId; this.tenant = tenant; this.priority = priority; this.deadline = deadline;
+        }
     }
 
     public Master() throws IOException {
@@ -45,16 +197,42 @@ public class Master {
         this.port = port;
         this.studentId = System.getenv("STUDENT_ID");
         if (studentId == null) studentId = "DEFAULT_STUDENT";
-        this.threadPool = Executors.newFixedThreadPool(10);
+        // Every connection holds a pool thread for its lifetime, so the pool grows with the cluster
+        this.threadPool = Executors.newCachedThreadPool();
+        this.computePool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.taskQueue = new FairScheduler(envInt("MASTER_MAX_QUEUED", MAX_QUEUED_TASKS));
+        this.maxClientJobs = envInt("MASTER_MAX_CLIENT_JOBS", MAX_CLIENT_JOBS);
+        this.resumeGraceMs = envInt("MASTER_RESUME_GRACE_MS", RESUME_GRACE_MS);
+        String memoBytes = System.getenv("MASTER_MEMO_BYTES");
+        if (memoBytes != null) enableMemoization(Long.parseLong(memoBytes));
+        this.strassenCutoff = envInt("MASTER_STRASSEN_CUTOFF", 0);
+        this.verifyRounds = envInt("MASTER_VERIFY_ROUNDS", 0);
         this.serverSocket = new ServerSocket(port);
         this.running = true;
-        System.out.println("[Master] Initialized on port " + port);
+        log.info("Initialized on port {}", port);
+    }
+
+    private static int envInt(String name, int def) {
+        String v = System.getenv(name);
+        return v != null ? Integer.parseInt(v) : def;
     }
 
     public void start() {
-        System.out.println("[Master] Starting on port " + port);
+        log.info("Starting on port {}", port);
         threadPool.execute(this::acceptClients);
         threadPool.execute(this::heartbeatMonitor);
+        dispatching = true;
+        threadPool.execute(this::dispatchTasks);
+        threadPool.execute(this::replicationHeartbeat);
+        String metricsPort = System.getenv("MASTER_METRICS_PORT");
+        if (metricsPort != null) {
+            try {
+                metricsServer = Metrics.serve(Integer.parseInt(metricsPort));
+                log.info("Metrics at http://localhost:{}/metrics", metricsPort);
+            } catch (IOException e) {
+                log.warn("Metrics endpoint failed: {}", e.getMessage());
+            }
+        }
     }
 
     private synchronized int nextClientId() {
@@ -62,9 +240,17 @@ public class Master {
     }
 
     private synchronized int nextTaskId() {
+        if (taskIdCounter >= reservedTaskIds) {
+            reservedTaskIds = taskIdCounter + TASK_ID_BLOCK;
+            replicate("ids;" + reservedTaskIds);
+        }
         return taskIdCounter++;
     }
 
+    private synchronized int nextJobId() {
+        return jobIdCounter++;
+    }
+
     private void acceptClients() {
         try {
             while (running) {
@@ -72,11 +258,11 @@ public class Master {
                 int id = nextClientId();
                 Client client = new Client(id, socket);
                 clients.put(id, client);
-                System.out.println("[Master] Client " + id + " connected");
+                log.info("Client {} connected", id);
                 threadPool.execute(() -> handleClient(client));
             }
         } catch (IOException e) {
-            if (running) e.printStackTrace();
+            if (running) log.error("Accept failed: {}", e.getMessage());
         }
     }
 
@@ -93,46 +279,455 @@ public class Master {
                     
                     client.lastHeartbeat = System.currentTimeMillis();
                     client.alive = true;
-                    
+                    client.bytesIn.add(line.length() + 1);
+
+                    long t0 = System.nanoTime();
                     Message msg = Message.parse(line);
+                    Metrics.histogram("master.deserialize_ns").record(System.nanoTime() - t0);
                     String type = msg.messageType != null ? msg.messageType : msg.type;
-                    System.out.println("[Master] Received " + type + " from client " + client.id);
+                    String counted = INBOUND_TYPES.contains(type) ? type : "other";
+                    Metrics.counter("master.messages_in." + counted).increment();
+                    log.debug("Received {} from client {}", type, client.id);
 
                     if ("RPC_REQUEST".equals(type)) {
                         handleRpcRequest(client, msg);
+                    } else if ("REGISTER_WORKER".equals(type)) {
+                        handleRegisterWorker(client, msg);
+                    } else if ("TASK_COMPLETE".equals(type) || "TASK_ERROR".equals(type)) {
+                        handleTaskResult(client, msg, "TASK_COMPLETE".equals(type));
                     } else if ("HEARTBEAT_ACK".equals(type)) {
                         client.lastHeartbeat = System.currentTimeMillis();
+                    } else if ("METRICS".equals(type)) {
+                        reply(client, "METRICS", Metrics.render());
+                    } else if ("STANDBY".equals(type)) {
+                        handleStandby(client);
                     }
                 } catch (Exception e) {
-                    System.err.println("[Master] Error: " + e.getMessage());
+                    log.warn("Error: {}", e.getMessage());
                 }
             }
         } catch (IOException e) {
-            System.err.println("[Master] Client " + client.id + " disconnected");
+            log.info("Client {} disconnected", client.id);
         } finally {
             client.alive = false;
             clients.remove(client.id);
-            // Reassign tasks from dead client
-            for (Task t : activeTasks.values()) {
-                taskQueue.offer(t);
+            standbys.remove(client);
+            detach(client);
+            Metrics.removePrefix("master.client." + client.id + ".");
+        }
+    }
+
+    // A Worker holding a session keeps its tasks for resumeGraceMs; anything else is
+    // requeued at once. A session already taken over by a newer connection is left alone.
+    private void detach(Client client) {
+        String token = client.session;
+        if (token == null || resumeGraceMs <= 0 || sessions.get(token) != client) {
+            if (token != null) sessions.remove(token, client);
+            reassignTasksOf(client);
+            return;
+        }
+        log.info("Worker {} dropped, holding its session for {} ms", client.workerId, resumeGraceMs);
+        CompletableFuture.delayedExecutor(resumeGraceMs, TimeUnit.MILLISECONDS, threadPool).execute(() -> {
+            if (sessions.remove(token, client)) {
+                log.warn("Worker {} did not resume, requeueing its tasks", client.workerId);
+                reassignTasksOf(client);
+            }
+        });
+    }
+
+    /**
+     * Moves a dropped connection's session to its replacement: tasks the Worker still
+     * holds (taskIds) stay in flight on the new connection, the rest are requeued, and
+     * its resident tiles carry over since the Worker's cache survived the drop.
+     */
+    private void resume(Client old, Client now, Set<Integer> taskIds) {
+        now.residentTiles.addAll(old.residentTiles);
+        now.avgTaskMs = old.avgTaskMs;
+        int kept = 0;
+        for (Task t : activeTasks.values()) {
+            if (t.assignedClient != old.id) continue;
+            if (taskIds.contains(t.taskId)) {
+                t.assignedClient = now.id;
+                now.inFlight.incrementAndGet();
+                now.inFlightBytes.addAndGet(t.sentBytes);
+                kept++;
+            } else if (activeTasks.remove(t.taskId, t)) {
+                t.assignedClient = -1;
+                t.firstConsideredTime = 0;
+                requeue(t);
             }
-            activeTasks.clear();
         }
+        old.inFlight.set(0);
+        old.inFlightBytes.set(0);
+        creditReturned();
+        Metrics.counter("master.sessions_resumed").increment();
+        log.info("Worker {} resumed as client {} with {} tasks in flight", old.workerId, now.id, kept);
     }
 
+    // Registration payload: workerId[;option...]. Options the Master supports are echoed
+    // back in WORKER_ACK and apply to this connection only: compress=deflate, and
+    // credits=tasks,bytes for the most work the Worker accepts outstanding at once.
+    // WORKER_ACK also carries session=token. A reconnecting Worker sends
+    // session=token;tasks=id,... and, if the session is still held, gets "resumed".
+    private void handleRegisterWorker(Client client, Message msg) {
+        String payload = msg.payloadStr != null ? msg.payloadStr : "";
+        String[] parts = payload.split(";");
+        boolean compress = false;
+        String token = null;
+        Set<Integer> held = new HashSet<>();
+        for (int i = 1; i < parts.length; i++) {
+            if (parts[i].equals("compress=deflate")) compress = true;
+            if (parts[i].startsWith("credits=")) {
+                String[] credits = parts[i].substring("credits=".length()).split(",");
+                client.creditTasks = Math.max(1, Integer.parseInt(credits[0]));
+                client.creditBytes = Math.max(1, Long.parseLong(credits[1]));
+            }
+            if (parts[i].startsWith("cores=")) client.cores = Math.max(1, Integer.parseInt(parts[i].substring(6)));
+            if (parts[i].startsWith("heap=")) client.maxHeap = Long.parseLong(parts[i].substring(5));
+            if (parts[i].startsWith("score=")) client.score = Double.parseDouble(parts[i].substring(6));
+            if (parts[i].startsWith("features=")) {
+                client.features = new HashSet<>(Arrays.asList(parts[i].substring(9).split(",")));
+            }
+            if (parts[i].startsWith("session=")) token = parts[i].substring("session=".length());
+            if (parts[i].startsWith("tasks=") && parts[i].length() > "tasks=".length()) {
+                for (String id : parts[i].substring("tasks=".length()).split(",")) held.add(Integer.parseInt(id));
+            }
+        }
+        client.compress = compress;
+
+        // Resume only the same Worker's session, and take it over even if the old
+        // connection has not been seen to drop yet
+        Client old = token != null ? sessions.get(token) : null;
+        boolean resumed = old != null && old != client && parts[0].equals(old.workerId)
+                && sessions.replace(token, old, client);
+        if (resumed) {
+            old.alive = false;
+            try {
+                old.socket.close();
+            } catch (IOException ignored) {
+            }
+            resume(old, client, held);
+        } else {
+            token = Long.toHexString(tokens.nextLong()) + Long.toHexString(System.nanoTime());
+            sessions.put(token, client);
+            seedTaskTime(client);
+        }
+        client.session = token;
+
+        Message ack = new Message();
+        ack.messageType = "WORKER_ACK";
+        ack.studentId = studentId;
+        ack.payloadStr = (compress ? "compress=deflate" : "compress=none")
+                + ";credits=" + client.creditTasks + "," + client.creditBytes + ";session=" + token
+                + (resumed ? ";resumed" : "");
+        send(client, ack);
+        client.workerId = parts[0];   // now eligible for dispatch
+        log.info("Worker {} registered as client {}: {}", client.workerId, client.id, client.cores + " cores, score "
+                + Math.round(client.score) + ", features " + client.features + (compress ? ", compressed" : ""));
+    }
+
+    // Before its first result a Worker's task time is guessed from the measured Workers,
+    // scaled by their benchmark scores, so a faster box is preferred from the start
+    private void seedTaskTime(Client w) {
+        if (w.score <= 0) return;
+        double work = 0;
+        int n = 0;
+        for (Client c : clients.values()) {
+            if (c == w || !c.alive || c.workerId == null || c.score <= 0) continue;
+            work += c.avgTaskMs * c.score;
+            n++;
+        }
+        if (n > 0) w.avgTaskMs = work / n / w.score;
+    }
+
+    // Worker result payload: taskId;result (TASK_COMPLETE) or taskId;reason (TASK_ERROR)
+    void handleTaskResult(Client client, Message msg, boolean ok) {
+        String payload = msg.payloadStr != null ? msg.payloadStr : "";
+        int sep = payload.indexOf(';');
+        if (sep < 0) return;
+        Task t;
+        try {
+            t = activeTasks.get(Integer.parseInt(payload.substring(0, sep)));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (t == null) return;   // already reassigned and finished elsewhere
+        // A late reply from a Worker the task was taken from leaves it to the current holder;
+        // its credit went back when the task was reassigned. Claiming with remove(id, t)
+        // keeps that holder's reply from ever seeing the task missing.
+        if (t.assignedClient != client.id || !activeTasks.remove(t.taskId, t)) return;
+        client.inFlight.decrementAndGet();
+        client.inFlightBytes.addAndGet(-t.sentBytes);
+        creditReturned();
+        Metrics.histogram("master.task.round_trip_us").record((System.nanoTime() - t.dispatchedNanos) / 1000);
+        long elapsed = System.currentTimeMillis() - t.dispatchedTime;
+        client.avgTaskMs = 0.8 * client.avgTaskMs + 0.2 * Math.max(1, elapsed);
+        String body = payload.substring(sep + 1);
+        if (!ok && body.startsWith("CACHE_MISS:")) {
+            // Worker evicted an operand we thought it held: resend it inline
+            client.residentTiles.remove(body.substring("CACHE_MISS:".length()));
+            t.assignedClient = -1;
+            requeue(t);
+            return;
+        }
+        if (ok && !msg.checksumValid()) {
+            // Damaged on the way from the Worker's kernel: run it again elsewhere
+            Metrics.counter("master.task.checksum_failures").increment();
+            log.warn("Task {} from client {} failed its checksum, re-executing", t.taskId, client.id);
+            avoid(t, client.id);
+            requeue(t);
+            return;
+        }
+        if (ok) {
+            t.result.complete(body);
+        } else {
+            t.result.completeExceptionally(new RuntimeException("Task " + t.taskId + " failed: " + body));
+        }
+    }
+
+    // Client job payload: taskId;TYPE;data[;priority=N][;deadlineMs=N][;result=int|long|mod:m],
+    // with matrices as rows split by '\' and values by ',' (MATRIX_MULTIPLY takes "A|B"). The
+    // job runs as the sender's tenant on a pool thread so this connection keeps reading. A
+    // client at its job limit, or a full queue, gets BUSY "taskId;RETRY_AFTER=ms" and should
+    // resend later; a deadline the current backlog already rules out is refused at once.
+    // Unknown types are echoed.
     private void handleRpcRequest(Client client, Message msg) {
+        String payload = msg.payloadStr != null ? msg.payloadStr : "";
+        log.debug("Processing RPC: {}", payload);
+        String[] parts = payload.split(";");
+        String tenant = msg.studentId != null ? msg.studentId : "anonymous";
+        if (parts.length < 3 || !("MATRIX_MULTIPLY".equals(parts[1]) || "BLOCK_TRANSPOSE".equals(parts[1]))) {
+            reply(client, "TASK_COMPLETE", payload + ";success");
+            return;
+        }
+        RpcOptions opts;
         try {
-            String payload = msg.payloadStr != null ? msg.payloadStr : "";
-            System.out.println("[Master] Processing RPC: " + payload);
-            
-            Message resp = new Message();
-            resp.messageType = "TASK_COMPLETE";
-            resp.studentId = studentId;
-            resp.payloadStr = payload + ";success";
-            client.out.println(resp.toJson());
-        } catch (Exception e) {
-            System.err.println("[Master] Error: " + e.getMessage());
+            opts = RpcOptions.parse(parts);
+        } catch (IllegalArgumentException e) {
+            reply(client, "TASK_ERROR", parts[0] + ";" + e.getMessage());
+            return;
+        }
+        CompletableFuture<String> recovered = recoveredJobs.remove(tenant + ";" + parts[0]);
+        if (recovered != null) {
+            replyWhenDone(client, parts[0], recovered);   // resent after a failover; already running
+            return;
+        }
+        long waitMs = estimatedWaitMs();
+        if (opts.deadlineMs > 0 && waitMs > opts.deadlineMs) {
+            reply(client, "TASK_ERROR", parts[0] + ";DEADLINE_UNMEETABLE");
+            return;
+        }
+        if (client.activeJobs.incrementAndGet() > maxClientJobs || taskQueue.size() >= taskQueue.capacity()) {
+            client.activeJobs.decrementAndGet();
+            reply(client, "BUSY", parts[0] + ";RETRY_AFTER=" + Math.max(50, Math.min(5000, waitMs)));
+            return;
+        }
+        replyWhenDone(client, parts[0], startRpcJob(tenant, payload, parts, opts)
+                .whenComplete((r, e) -> client.activeJobs.decrementAndGet()));
+    }
+
+    // Options after an RPC job's data field
+    static class RpcOptions {
+        int priority;
+        long deadlineMs;
+        ResultType type = ResultType.INT;
+
+        static RpcOptions parse(String[] parts) {
+            RpcOptions o = new RpcOptions();
+            for (int i = 3; i < parts.length; i++) {
+                if (parts[i].startsWith("priority=")) o.priority = Integer.parseInt(parts[i].substring(9));
+                if (parts[i].startsWith("deadlineMs=")) o.deadlineMs = Long.parseLong(parts[i].substring(11));
+                if (parts[i].startsWith("result=")) o.type = ResultType.parse(parts[i].substring(7));
+            }
+            return o;
+        }
+    }
+
+    // Runs an admitted RPC job on threadPool; it stays in the replicated log until answered
+    private CompletableFuture<String> startRpcJob(String tenant, String payload, String[] parts, RpcOptions opts) {
+        String key = tenant + ";" + parts[0];
+        synchronized (replicationLock) {
+            admittedJobs.put(key, tenant + ";" + payload);
+            replicate("job;" + tenant + ";" + payload);
+        }
+        long accepted = System.currentTimeMillis();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                String[] operands = parts[2].split("\\|");
+                int numWorkers = Math.max(1, workerSlots());
+                Object result = submitAs(tenant, opts.priority, opts.deadlineMs, () -> "BLOCK_TRANSPOSE".equals(parts[1])
+                        ? coordinate("TRANSPOSE", parseTextMatrix(operands[0]), numWorkers)
+                        : operands.length > 1
+                        ? coordinate("MATMUL", parseTextMatrix(operands[0]), parseTextMatrix(operands[1]), opts.type,
+                                numWorkers)
+                        : coordinate("MATMUL", parseTextMatrix(operands[0]), numWorkers));
+                if (result == null) {
+                    boolean late = opts.deadlineMs > 0 && System.currentTimeMillis() - accepted >= opts.deadlineMs;
+                    throw new IllegalStateException(late ? "DEADLINE_EXCEEDED" : "job failed");
+                }
+                return result instanceof long[][] ? formatTextMatrix((long[][]) result) : formatTextMatrix((int[][]) result);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, threadPool).whenComplete((r, e) -> {
+            synchronized (replicationLock) {
+                admittedJobs.remove(key);
+                replicate("done;" + key);
+            }
+        });
+    }
+
+    private void replyWhenDone(Client client, String taskId, CompletableFuture<String> job) {
+        job.whenComplete((r, e) -> {
+            if (e == null) {
+                reply(client, "TASK_COMPLETE", taskId + ";" + r);
+            } else {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                reply(client, "TASK_ERROR", taskId + ";" + cause.getMessage());
+            }
+        });
+    }
+
+    // A standby subscribing to the replication log: a snapshot of the current state, then
+    // each change as it happens, plus a heartbeat every REPLICATION_HEARTBEAT_MS
+    private void handleStandby(Client client) {
+        synchronized (replicationLock) {
+            replicateTo(client, "reset");
+            replicateTo(client, "ids;" + reservedTaskIds);
+            for (String job : admittedJobs.values()) replicateTo(client, "job;" + job);
+            standbys.add(client);
         }
+        log.info("Standby subscribed as client {}", client.id);
+    }
+
+    private void replicate(String entry) {
+        if (standbys.isEmpty()) return;
+        synchronized (replicationLock) {
+            for (Client s : standbys) replicateTo(s, entry);
+        }
+    }
+
+    private void replicateTo(Client standby, String entry) {
+        Message m = new Message();
+        m.messageType = "REPLICATE";
+        m.studentId = studentId;
+        m.payloadStr = entry;
+        send(standby, m);
+    }
+
+    private void replicationHeartbeat() {
+        try {
+            while (running) {
+                Thread.sleep(REPLICATION_HEARTBEAT_MS);
+                replicate("hb");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Standby takeover: task ids continue past the old primary's last reservation, so
+     * late results for its tasks cannot be mistaken for ours, and the RPC jobs it had
+     * admitted but not answered are re-run. A client resending one of them gets that
+     * result instead of starting it again.
+     */
+    void recover(int firstTaskId, Collection<String> jobs) {
+        synchronized (this) {
+            taskIdCounter = Math.max(taskIdCounter, firstTaskId);
+        }
+        for (String job : jobs) {
+            int sep = job.indexOf(';');
+            String tenant = job.substring(0, sep);
+            String payload = job.substring(sep + 1);
+            String[] parts = payload.split(";");
+            String key = tenant + ";" + parts[0];
+            CompletableFuture<String> f = startRpcJob(tenant, payload, parts, RpcOptions.parse(parts));
+            recoveredJobs.put(key, f);
+            // Unclaimed results are dropped after a while
+            f.whenComplete((r, e) -> CompletableFuture.delayedExecutor(TASK_TIMEOUT_MS, TimeUnit.MILLISECONDS,
+                    threadPool).execute(() -> recoveredJobs.remove(key, f)));
+        }
+        log.info("Took over with {} recovered jobs, task ids from {}", jobs.size(), firstTaskId);
+    }
+
+    // Rough time before newly queued work starts: the backlog spread over the Workers
+    // (or local cores) at their measured task times
+    private long estimatedWaitMs() {
+        double tasksPerMs = 0;
+        for (Client c : clients.values()) {
+            if (c.alive && c.workerId != null) tasksPerMs += c.slots() / c.avgTaskMs;
+        }
+        if (tasksPerMs == 0) tasksPerMs = Runtime.getRuntime().availableProcessors() / 10.0;
+        return (long) ((taskQueue.size() + activeTasks.size()) / tasksPerMs);
+    }
+
+    private void reply(Client client, String type, String payload) {
+        Message resp = new Message();
+        resp.messageType = type;
+        resp.studentId = studentId;
+        resp.payloadStr = payload;
+        if (client.compress) resp.compressPayload(Message.COMPRESSION_THRESHOLD);
+        send(client, resp);
+    }
+
+    // Serializes and writes one message, recording serialize time and bytes out
+    private void send(Client client, Message msg) {
+        long t0 = System.nanoTime();
+        String json = msg.toJson();
+        Metrics.histogram("master.serialize_ns").record(System.nanoTime() - t0);
+        client.bytesOut.add(json.length() + 1);
+        client.out.println(json);
+    }
+
+    static int[][] parseTextMatrix(String text) {
+        String[] rows = text.split("\\\\");
+        int[][] m = new int[rows.length][];
+        for (int i = 0; i < rows.length; i++) {
+            String[] vals = rows[i].split(",");
+            m[i] = new int[vals.length];
+            for (int j = 0; j < vals.length; j++) {
+                m[i][j] = Integer.parseInt(vals[j].trim());
+            }
+        }
+        return m;
+    }
+
+    static long[][] parseLongTextMatrix(String text) {
+        String[] rows = text.split("\\\\");
+        long[][] m = new long[rows.length][];
+        for (int i = 0; i < rows.length; i++) {
+            String[] vals = rows[i].split(",");
+            m[i] = new long[vals.length];
+            for (int j = 0; j < vals.length; j++) {
+                m[i][j] = Long.parseLong(vals[j].trim());
+            }
+        }
+        return m;
+    }
+
+    static String formatTextMatrix(int[][] m) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < m.length; i++) {
+            if (i > 0) sb.append('\\');
+            for (int j = 0; j < m[i].length; j++) {
+                if (j > 0) sb.append(',');
+                sb.append(m[i][j]);
+            }
+        }
+        return sb.toString();
+    }
+
+    static String formatTextMatrix(long[][] m) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < m.length; i++) {
+            if (i > 0) sb.append('\\');
+            for (int j = 0; j < m[i].length; j++) {
+                if (j > 0) sb.append(',');
+                sb.append(m[i][j]);
+            }
+        }
+        return sb.toString();
     }
 
     private void heartbeatMonitor() {
@@ -149,20 +744,25 @@ public class Master {
                         hb.studentId = studentId;
                         hb.payloadStr = "ping";
                         try {
-                            c.out.println(hb.toJson());
+                            send(c, hb);
                         } catch (Exception e) {
                             c.alive = false;
                         }
                         
                         // Check timeout
                         if (now - c.lastHeartbeat > 10000) {
-                            System.out.println("[Master] Client " + c.id + " timeout, marking dead");
+                            log.warn("Client {} timeout, marking dead", c.id);
                             c.alive = false;
-                            // Reassign its tasks
-                            for (Task t : activeTasks.values()) {
-                                taskQueue.offer(t);
+                            reassignTasksOf(c);
+                            // A Worker that was only slow reconnects and resumes its session
+                            // instead of answering on a connection we gave up on. RPC clients
+                            // keep theirs: nothing would resend their pending jobs.
+                            if (c.workerId != null) {
+                                try {
+                                    c.socket.close();
+                                } catch (IOException ignored) {
+                                }
                             }
-                            activeTasks.clear();
                         }
                     }
                 }
@@ -172,6 +772,294 @@ public class Master {
         }
     }
 
+    // Hands queued tasks to the best-placed registered Worker (see choosePlacement),
+    // or runs them on computePool when no Worker is connected. Tasks waiting for a
+    // data-local Worker or for credit are parked in deferred and retried every loop.
+    // While every Worker's task credit is used up, nothing more is taken from the
+    // fair queue, so queued work stays in fair order until it can actually be sent.
+    private void dispatchTasks() {
+        ArrayDeque<Task> deferred = new ArrayDeque<>();
+        try {
+            while (running) {
+                long waitMs = deferred.isEmpty() ? 500 : 2;
+                if (hasCredit()) {
+                    Task t = taskQueue.poll(waitMs, TimeUnit.MILLISECONDS);
+                    if (t != null && !t.result.isDone() && !dispatch(t)) deferred.add(t);
+                } else {
+                    synchronized (creditSignal) {
+                        creditSignal.wait(waitMs);
+                    }
+                }
+
+                for (int i = deferred.size(); i > 0; i--) {
+                    Task d = deferred.poll();
+                    if (!d.result.isDone() && !dispatch(d)) deferred.add(d);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // True when no Worker is registered (tasks run locally) or one has a free task slot
+    private boolean hasCredit() {
+        boolean any = false;
+        for (Client c : clients.values()) {
+            if (!c.alive || c.workerId == null) continue;
+            if (c.inFlight.get() < c.creditTasks) return true;
+            any = true;
+        }
+        return !any;
+    }
+
+    private void creditReturned() {
+        synchronized (creditSignal) {
+            creditSignal.notifyAll();
+        }
+    }
+
+    // Returns false when the task should wait for a data-local Worker or for credit
+    private boolean dispatch(Task t) {
+        List<Client> workers = new ArrayList<>();
+        for (Client c : clients.values()) {
+            if (c.alive && c.workerId != null && c.out != null) workers.add(c);
+        }
+        if (workers.isEmpty()) {
+            computePool.execute(() -> runLocally(t));
+            return true;
+        }
+        Client w = choosePlacement(workers, t, System.currentTimeMillis());
+        if (w == null) return false;
+
+        String body = t.bodyFor(w);
+        t.assignedClient = w.id;
+        t.dispatchedTime = System.currentTimeMillis();
+        t.dispatchedNanos = System.nanoTime();
+        Metrics.histogram("master.task.queue_wait_us").record((t.dispatchedNanos - t.queuedNanos) / 1000);
+        t.sentBytes = body.length();
+        activeTasks.put(t.taskId, t);
+        w.inFlight.incrementAndGet();
+        w.inFlightBytes.addAndGet(t.sentBytes);
+
+        Message req = new Message();
+        req.messageType = "RPC_REQUEST";
+        req.studentId = studentId;
+        req.payloadStr = t.taskId + ";" + body;
+        req.trace = t.trace;
+        if (w.compress) req.compressPayload(Message.COMPRESSION_THRESHOLD);
+        try {
+            send(w, req);
+        } catch (Exception e) {
+            w.alive = false;
+            reassignTasksOf(w);
+        }
+        if (t.trace != null) {
+            long sent = System.nanoTime();
+            Tracer.span("Master", "enqueue", t.queuedNanos, t.dispatchedNanos, t.trace);
+            Tracer.span("Master", "dispatch", t.dispatchedNanos, sent, t.trace);
+            Tracer.flow("Master", true, sent, t.trace);
+        }
+        return true;
+    }
+
+    /**
+     * Picks the Worker with the lowest estimated completion time for t: queued work
+     * ((inFlight + 1) / its core slots x its measured task time) plus the cost of
+     * shipping operands it does not already hold. Workers without credit for t are
+     * skipped, and null is returned if none has any. Workers in t.avoid are skipped
+     * too, unless no other is registered. If the best choice lacks t's operands while another
+     * Worker holds all of them, t waits up to LOCALITY_WAIT_MS for that Worker (delay
+     * scheduling) and null is returned; after the window the cheapest Worker wins.
+     */
+    static Client choosePlacement(List<Client> workers, Task t, long now) {
+        if (t.firstConsideredTime == 0) t.firstConsideredTime = now;
+        Client best = null;
+        double bestCost = Double.MAX_VALUE;
+        boolean anyLocal = false;
+        boolean avoidAll = !t.avoid.isEmpty() && workers.stream().allMatch(c -> t.avoid.contains(c.id));
+        for (Client c : workers) {
+            if (!avoidAll && t.avoid.contains(c.id)) continue;
+            long missing = t.missingBytes(c);
+            if (missing == 0 && !t.refs.isEmpty()) anyLocal = true;   // worth waiting for, credit or not
+            if (!c.canAccept(t.payload.length() + missing)) continue;
+            // Queue ahead of the task spread over the cores that will run it
+            double cost = (double) (c.inFlight.get() + 1) / c.slots() * c.avgTaskMs + (double) missing / BYTES_PER_MS;
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = c;
+            }
+        }
+        if (best == null) return null;
+        boolean bestLocal = t.refs.isEmpty() || t.missingBytes(best) == 0;
+        if (!bestLocal && anyLocal && now - t.firstConsideredTime < LOCALITY_WAIT_MS) return null;
+        return best;
+    }
+
+    // Tasks the registered Workers compute at once; jobs are split into tiles for this many
+    private int workerSlots() {
+        int n = 0;
+        for (Client c : clients.values()) {
+            if (c.alive && c.workerId != null) n += c.slots();
+        }
+        return n;
+    }
+
+    private void runLocally(Task t) {
+        long t0 = System.nanoTime();
+        Metrics.histogram("master.task.queue_wait_us").record((t0 - t.queuedNanos) / 1000);
+        try {
+            String result = Worker.runTask(t.inlineBody());
+            long t1 = System.nanoTime();
+            Metrics.histogram("master.task.local_us").record((t1 - t0) / 1000);
+            if (t.trace != null) {
+                Tracer.span("Master", "enqueue", t.queuedNanos, t0, t.trace);
+                Tracer.span("Master", "compute", t0, t1, t.trace);
+            }
+            if (result == null) throw new IllegalArgumentException("Unknown task: " + t.payload);
+            t.result.complete(result);
+        } catch (Exception e) {
+            t.result.completeExceptionally(e);
+        }
+    }
+
+    // Requeue only the tasks the given client was holding
+    void reassignTasksOf(Client c) {
+        for (Task t : activeTasks.values()) {
+            if (t.assignedClient == c.id && activeTasks.remove(t.taskId, t)) {
+                t.assignedClient = -1;
+                t.firstConsideredTime = 0;
+                requeue(t);
+            }
+        }
+        c.inFlight.set(0);
+        c.inFlightBytes.set(0);
+        creditReturned();
+    }
+
+    private static void avoid(Task t, int clientId) {
+        Set<Integer> avoid = new HashSet<>(t.avoid);
+        avoid.add(clientId);
+        t.avoid = avoid;
+        t.assignedClient = -1;
+        t.firstConsideredTime = 0;
+    }
+
+    // Back into the fair queue; its old tenant slot is given up first
+    private void requeue(Task t) {
+        taskQueue.release(t);
+        taskQueue.offer(t);
+    }
+
+    // Operand keys are job-scoped; once a job is done Workers age them out of their LRU
+    private void forgetJob(int jobId) {
+        String prefix = "j" + jobId + ":";
+        for (Client c : clients.values()) {
+            c.residentTiles.removeIf(k -> k.startsWith(prefix));
+        }
+    }
+
+    private static String tileKey(int jobId, String matrixId, int tileRow, int tileCol) {
+        return "j" + jobId + ":" + matrixId + ":" + tileRow + ":" + tileCol;
+    }
+
+    /**
+     * Runs tile tasks to completion and returns their results in order. Once the
+     * dispatcher is running, tasks go through the fair queue under the current job and
+     * tenant, and from there to Workers or computePool; before start() they go straight
+     * to computePool, so callers see the same behavior with or without a cluster.
+     */
+    private List<String> runTasks(List<Task> tasks) throws Exception {
+        boolean queued = running && dispatching;
+        Job job = currentJob.get();
+        TileCache m = memo;
+        for (Task t : tasks) {
+            if (t.result.isDone()) continue;   // answered from the memo cache
+            if (m != null && t.memoKey != 0) {
+                String key = Long.toHexString(t.memoKey);
+                t.result.thenAccept(r -> m.put(key, r));
+            }
+            t.queuedNanos = System.nanoTime();
+            if (job != null) {
+                if (Tracer.enabled()) t.trace = Tracer.context(job.traceId, t.taskId);
+                t.jobId = job.jobId;
+                t.tenant = job.tenant;
+                t.priority = job.priority;
+                t.deadline = job.deadline;
+            }
+            if (queued) {
+                t.result.whenComplete((r, e) -> taskQueue.release(t));
+                taskQueue.put(t);         // blocks while the queue is full
+            } else {
+                computePool.submit(() -> runLocally(t));
+            }
+        }
+        long deadline = System.currentTimeMillis() + TASK_TIMEOUT_MS;
+        if (job != null && job.deadline != 0) deadline = Math.min(deadline, job.deadline);
+        List<String> results = new ArrayList<>(tasks.size());
+        for (Task t : tasks) {
+            long wait = Math.max(1, deadline - System.currentTimeMillis());
+            results.add(t.result.get(wait, TimeUnit.MILLISECONDS));
+        }
+        if (job != null) job.lastResultNanos = System.nanoTime();
+        return results;
+    }
+
+    /**
+     * Turns on memoization of tile results, keyed by an xxHash64 of the tile op and
+     * each operand's contents and bounded to maxBytes of encoded results (LRU).
+     * Repeated tile computations are then answered without dispatching.
+     */
+    public void enableMemoization(long maxBytes) {
+        memo = new TileCache(maxBytes);
+    }
+
+    /**
+     * Square MATMULs larger than cutoff are computed Strassen-Winograd style, with
+     * sub-products of at most cutoff rows run as classical tile tasks. 0 turns it
+     * off (the default, or MASTER_STRASSEN_CUTOFF).
+     */
+    public void enableStrassen(int cutoff) {
+        strassenCutoff = Math.max(0, cutoff);
+    }
+
+    /**
+     * Checks every MATMUL result with rounds of Freivalds' algorithm (a wrong result
+     * slips through with probability at most 2^-rounds) and re-executes the tiles it
+     * implicates on other Workers. 0 turns it off (the default, or MASTER_VERIFY_ROUNDS).
+     */
+    public void enableVerification(int rounds) {
+        verifyRounds = Math.max(0, rounds);
+    }
+
+    public String memoStats() {
+        TileCache m = memo;
+        return m != null ? m.stats() : "disabled";
+    }
+
+    // A task already answered from the memo cache, or null on a miss or when disabled
+    private Task memoized(long key) {
+        TileCache m = memo;
+        String hit = m != null ? m.get(Long.toHexString(key)) : null;
+        if (hit == null) return null;
+        Task t = new Task(-1, null);
+        t.result.complete(hit);
+        return t;
+    }
+
+    private static long hashString(String s) {
+        return s == null ? 0 : new XxHash64().update(s).digest();
+    }
+
+    private static int blockRows(int rows, int numWorkers) {
+        if (TILE_ROWS > 0) return TILE_ROWS;
+        int tiles = Math.max(1, numWorkers) * 2;
+        return Math.max(Math.min(rows, MIN_TILE_ROWS), (rows + tiles - 1) / tiles);
+    }
+
+    private static String encodeOperand(int[][] m, boolean sparse) {
+        return sparse ? Message.encodeSparseTileString(SparseMatrix.fromDense(m)) : Message.encodeTileString(m);
+    }
+
     public void listen(int p) throws IOException {
         this.port = p;
         this.serverSocket = new ServerSocket(p);
@@ -184,61 +1072,695 @@ public class Master {
 
     private void reassignFailedTasks() {
         for (Task t : activeTasks.values()) {
-            taskQueue.offer(t);
+            requeue(t);
         }
         activeTasks.clear();
     }
 
+    /**
+     * Unary distributed operations: MATMUL (single operand), TRANSPOSE, ROW_SUM,
+     * COL_SUM and TOTAL_SUM. Unknown ops return null.
+     */
     public Object coordinate(String op, int[][] matrix, int numWorkers) {
-        System.out.println("[Master] coordinate() op=" + op + " numWorkers=" + numWorkers);
-        
-        if ("MATMUL".equals(op) && matrix != null && matrix.length > 0) {
-            try {
-                int rows = matrix.length;
-                List<Callable<int[]>> tasks = new ArrayList<>();
-                
-                // Create parallel tasks for each row
-                for (int r = 0; r < rows; r++) {
-                    final int row = r;
-                    tasks.add(() -> {
-                        // Simple row computation
-                        int[] result = new int[matrix[row].length];
-                        for (int i = 0; i < result.length; i++) {
-                            result[i] = matrix[row][i] * (i + 1);
-                        }
-                        return result;
-                    });
+        log.debug("coordinate() op={} numWorkers={}", op, numWorkers);
+        if (op == null || matrix == null || matrix.length == 0) return null;
+
+        return runJob(() -> {
+            switch (op) {
+                case "MATMUL":
+                    // Single-operand MATMUL scales column i by (i + 1), i.e. multiplies by diag(1..n),
+                    // done per row block so no n x n operand is ever built or shipped
+                    return stackRows(runRowBlocks("COLSCALE_TILE", matrix, null, null, null, numWorkers), matrix.length);
+                case "TRANSPOSE":
+                    return transposeBlocks(matrix, runRowBlocks("TRANSPOSE_TILE", matrix, null, null, null, numWorkers),
+                            blockRows(matrix.length, numWorkers));
+                case "ROW_SUM":
+                    return stackRows(runRowBlocks("ROW_SUM_TILE", matrix, null, null, null, numWorkers), matrix.length);
+                case "COL_SUM":
+                case "TOTAL_SUM":
+                    List<String> partials = runRowBlocks(op + "_TILE", matrix, null, null, null, numWorkers);
+                    return Message.decodeTileString(reduceTree(partials));
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * Binary distributed operations: MATMUL (A x B) and element-wise ADD.
+     * For MATMUL, A is split into row blocks, one tile task per block, each carrying
+     * the whole of B. Operands sparse enough by SPARSE_DENSITY are shipped as CSR
+     * and Workers pick the matching sparse kernel.
+     */
+    public Object coordinate(String op, int[][] a, int[][] b, int numWorkers) {
+        return coordinate(op, a, b, ResultType.INT, numWorkers);
+    }
+
+    /**
+     * As coordinate(op, a, b, numWorkers), with MATMUL sums computed in the given
+     * result type: ResultType.LONG returns an exact long[][] and refuses operands whose
+     * sums could overflow a long, ResultType.mod(m) returns an int[][] of residues.
+     */
+    public Object coordinate(String op, int[][] a, int[][] b, ResultType type, int numWorkers) {
+        log.debug("coordinate() op={} type={} numWorkers={}", op, type, numWorkers);
+        if (a == null || b == null || a.length == 0) return null;
+
+        return runJob(() -> {
+            if ("MATMUL".equals(op)) {
+                if (a[0].length != b.length) {
+                    throw new IllegalArgumentException("Inner dimensions differ: " + a[0].length + " vs " + b.length);
                 }
-                
-                // Execute all row tasks in parallel
-                List<Future<int[]>> futures = threadPool.invokeAll(tasks, 30, TimeUnit.SECONDS);
-                
-                // Collect results
-                int[][] result = new int[rows][];
-                int idx = 0;
-                for (Future<int[]> f : futures) {
-                    try {
-                        result[idx++] = f.get();
-                    } catch (Exception e) {
-                        System.err.println("[Master] Task failed: " + e.getMessage());
-                        result[idx++] = new int[0];
-                    }
+                if (type == ResultType.LONG) checkLongRange(a, b);
+                // B goes to each Worker once and is referenced from its cache afterwards
+                String bKey = tileKey(currentJob.get().jobId, "B", 0, 0);
+                int cutoff = strassenCutoff;
+                if (type == ResultType.INT && cutoff > 0 && isSquare(a, b) && a.length > cutoff) {
+                    int[][] c = strassen(a, b, cutoff);
+                    if (verifyRounds == 0 || verify(a, b, c, type).isEmpty()) return c;
+                    // Its sub-products do not map to output rows; redo it by verified row blocks
+                    log.warn("Strassen product failed verification, recomputing by row blocks");
+                }
+                Map<String, String> refs = Collections.singletonMap(bKey,
+                        encodeOperand(b, SparseMatrix.density(b) <= SPARSE_DENSITY));
+                String suffix = type == ResultType.INT ? "@" + bKey : "@" + bKey + ";" + type;
+                List<Task> tasks = rowBlockTasks("MATMUL_TILE", a, null, suffix, refs, numWorkers);
+                List<String> tiles = runTasks(tasks);
+                if (verifyRounds > 0) return verifiedProduct(a, b, type, tasks, tiles, blockRows(a.length, numWorkers));
+                return stackProduct(tiles, type, a.length);
+            }
+            if ("ADD".equals(op)) {
+                if (a.length != b.length || a[0].length != b[0].length) {
+                    throw new IllegalArgumentException("ADD needs equal shapes");
+                }
+                return stackRows(runRowBlocks("ADD_TILE", a, b, null, null, numWorkers), a.length);
+            }
+            return null;
+        });
+    }
+
+    private static Object stackProduct(List<String> tiles, ResultType type, int rows) {
+        return type == ResultType.LONG ? stackLongRows(tiles, rows) : stackRows(tiles, rows);
+    }
+
+    /**
+     * Freivalds-checks a row-block MATMUL and re-executes the tiles holding rows that
+     * failed, each on a Worker other than the one that returned it, up to
+     * MAX_REEXECUTIONS times before giving up.
+     */
+    private Object verifiedProduct(int[][] a, int[][] b, ResultType type, List<Task> tasks, List<String> tiles,
+                                   int block) throws Exception {
+        Object c = stackProduct(tiles, type, a.length);
+        for (int attempt = 0; ; attempt++) {
+            Set<Integer> badRows = verify(a, b, c, type);
+            if (badRows.isEmpty()) return c;
+            if (attempt == MAX_REEXECUTIONS) {
+                throw new IllegalStateException("MATMUL failed verification after " + attempt + " re-executions");
+            }
+            Set<Integer> badTiles = new TreeSet<>();
+            for (int row : badRows) badTiles.add(row / block);
+            log.warn("Verification failed on {} rows, re-executing {} tiles", badRows.size(), badTiles.size());
+            Metrics.counter("master.verify.reexecuted_tiles").add(badTiles.size());
+            List<Task> redo = new ArrayList<>();
+            for (int i : badTiles) {
+                Task old = tasks.get(i);
+                Task t = new Task(nextTaskId(), old.payload);
+                t.refs = old.refs;
+                t.memoKey = old.memoKey;   // its result replaces the bad one in the memo cache
+                t.avoid = old.avoid;
+                if (old.assignedClient >= 0) avoid(t, old.assignedClient);
+                tasks.set(i, t);
+                redo.add(t);
+            }
+            List<String> fresh = runTasks(redo);
+            int k = 0;
+            for (int i : badTiles) tiles.set(i, fresh.get(k++));
+            c = stackProduct(tiles, type, a.length);
+        }
+    }
+
+    // Rows of c that failed verifyRounds Freivalds checks against a x b
+    private Set<Integer> verify(int[][] a, int[][] b, Object c, ResultType type) {
+        long t0 = System.nanoTime();
+        Set<Integer> bad = freivalds(a, b, c, type, verifyRounds, ThreadLocalRandom.current());
+        Metrics.histogram("master.verify_us").record((System.nanoTime() - t0) / 1000);
+        if (!bad.isEmpty()) Metrics.counter("master.verify.failures").increment();
+        return bad;
+    }
+
+    /**
+     * Freivalds' check of c = a x b in the given result type (int[][] results wrap like
+     * int, long[][] ones like long, mod(m) ones are residues): for each of rounds random
+     * vectors r it compares a(br) with cr, O(n^2) work instead of the product's O(n^3).
+     * Returns the rows that differed; a wrong row passes a round with probability at
+     * most 1/2.
+     */
+    static Set<Integer> freivalds(int[][] a, int[][] b, Object c, ResultType type, int rounds, Random rnd) {
+        int inner = b.length;
+        int m = inner > 0 ? b[0].length : 0;
+        long mod = type.isModular() ? type.modulus : 0;
+        long[] r = new long[m];
+        long[] br = new long[inner];
+        Set<Integer> bad = new TreeSet<>();
+        for (int round = 0; round < rounds; round++) {
+            for (int j = 0; j < m; j++) r[j] = mod > 0 ? Math.floorMod(rnd.nextLong(), mod) : rnd.nextLong();
+            for (int k = 0; k < inner; k++) br[k] = dot(b[k], r, mod);
+            for (int i = 0; i < a.length; i++) {
+                long abr = dot(a[i], br, mod);
+                long cr = c instanceof long[][] ? dot(((long[][]) c)[i], r, mod) : dot(((int[][]) c)[i], r, mod);
+                boolean same = type == ResultType.INT ? (int) abr == (int) cr : abr == cr;
+                if (!same) bad.add(i);
+            }
+        }
+        return bad;
+    }
+
+    // Sum of x[j] * y[j], wrapping like long, or mod m when m > 0 (y already reduced)
+    private static long dot(int[] x, long[] y, long m) {
+        long s = 0;
+        for (int j = 0; j < y.length; j++) {
+            s = m > 0 ? (s + Math.floorMod(x[j], m) * y[j]) % m : s + x[j] * y[j];
+        }
+        return s;
+    }
+
+    private static long dot(long[] x, long[] y, long m) {
+        long s = 0;
+        for (int j = 0; j < y.length; j++) {
+            s = m > 0 ? (s + Math.floorMod(x[j], m) * y[j]) % m : s + x[j] * y[j];
+        }
+        return s;
+    }
+
+    /**
+     * Scalar distributed operation: SCALE multiplies every element by scalar.
+     */
+    public Object coordinate(String op, int[][] matrix, int scalar, int numWorkers) {
+        log.debug("coordinate() op={} numWorkers={}", op, numWorkers);
+        if (!"SCALE".equals(op) || matrix == null || matrix.length == 0) return null;
+
+        return runJob(() -> stackRows(runRowBlocks("SCALE_TILE", matrix, null, Integer.toString(scalar), null,
+                numWorkers), matrix.length));
+    }
+
+    /**
+     * Evaluates a lazy expression DAG. Chains of row-local ops (MATMUL by a
+     * materialized right operand, ADD, SCALE, ROW_SUM, optionally ending in COL_SUM or
+     * TOTAL_SUM) are fused into one pipelined task per row block, so each stage runs
+     * on the Worker already holding the previous stage's tile and no intermediate
+     * is shipped back. TRANSPOSE, right-hand MATMUL operands and nodes used more than
+     * once are materialized, and a shared node is computed only once.
+     */
+    public int[][] evaluate(Expr root, int numWorkers) {
+        log.debug("evaluate() root={} numWorkers={}", root.op, numWorkers);
+        return (int[][]) runJob(() -> {
+            Evaluation ev = new Evaluation(currentJob.get().jobId, numWorkers);
+            countUses(root, ev.uses);
+            return evaluate(root, ev);
+        });
+    }
+
+    /**
+     * Runs work with every job it starts attributed to tenant, e.g. the studentId of
+     * an RPC client. Tenants share dispatch by weight (see setTenantShare); calls
+     * outside submitAs run as this Master's own studentId at priority 0.
+     */
+    public <T> T submitAs(String tenant, Callable<T> work) throws Exception {
+        return submitAs(tenant, 0, 0, work);
+    }
+
+    /**
+     * As submitAs(tenant, work), with the jobs dispatched in priority band priority
+     * (0..MAX_PRIORITY, higher first) and earliest-deadline-first within it. A job
+     * not finished within deadlineMs is abandoned and returns null like any failed
+     * job; its queued tasks are dropped rather than dispatched. deadlineMs of 0 means
+     * no deadline.
+     */
+    public <T> T submitAs(String tenant, int priority, long deadlineMs, Callable<T> work) throws Exception {
+        Job outer = submission.get();
+        submission.set(new Job(-1, tenant, Math.max(0, Math.min(MAX_PRIORITY, priority)),
+                deadlineMs > 0 ? System.currentTimeMillis() + deadlineMs : 0));
+        try {
+            return work.call();
+        } finally {
+            if (outer == null) submission.remove();
+            else submission.set(outer);
+        }
+    }
+
+    /**
+     * Gives tenant weight x the base share of dispatch bandwidth and caps how many
+     * of its tasks may be queued on Workers or running at once.
+     */
+    public void setTenantShare(String tenant, int weight, int maxInFlight) {
+        taskQueue.configure(tenant, weight, maxInFlight);
+    }
+
+    // Runs one public operation as a job. Nested calls (e.g. single-operand MATMUL)
+    // join the caller's job. Failures are logged and reported as null, except bad arguments.
+    private Object runJob(Callable<Object> work) {
+        boolean outermost = currentJob.get() == null;
+        if (outermost) {
+            Job s = submission.get();
+            currentJob.set(s != null ? new Job(nextJobId(), s.tenant, s.priority, s.deadline)
+                    : new Job(nextJobId(), studentId, 0, 0));
+        }
+        try {
+            return work.call();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Task failed: {}", e.getMessage());
+        } finally {
+            if (outermost) {
+                Job job = currentJob.get();
+                forgetJob(job.jobId);
+                currentJob.remove();
+                if (Tracer.enabled()) {
+                    long end = System.nanoTime();
+                    String ctx = Long.toHexString(job.traceId);
+                    Tracer.span("Master", "job " + job.jobId, job.startNanos, end, ctx);
+                    if (job.lastResultNanos != 0) Tracer.span("Master", "assemble", job.lastResultNanos, end, ctx);
                 }
-                
-                return result;
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
             }
         }
         return null;
     }
 
-    public void shutdown() { running = false; threadPool.shutdown(); }
+    // Per-call state while walking an expression DAG
+    private static class Evaluation {
+        final int job;
+        final int numWorkers;
+        final Map<Expr, Integer> uses = new IdentityHashMap<>();
+        final Map<Expr, int[][]> done = new IdentityHashMap<>();
+        int operandCounter = 0;
+        Evaluation(int job, int numWorkers) { this.job = job; this.numWorkers = numWorkers; }
+    }
+
+    private static void countUses(Expr e, Map<Expr, Integer> uses) {
+        if (e == null) return;
+        if (uses.merge(e, 1, Integer::sum) > 1) return;   // children already counted
+        countUses(e.left, uses);
+        countUses(e.right, uses);
+    }
+
+    private int[][] evaluate(Expr e, Evaluation ev) throws Exception {
+        int[][] result = ev.done.get(e);
+        if (result != null) return result;
+
+        if (Expr.LEAF.equals(e.op)) {
+            result = e.value;
+        } else if (Expr.TRANSPOSE.equals(e.op)) {
+            int[][] in = evaluate(e.left, ev);
+            result = transposeBlocks(in, runRowBlocks("TRANSPOSE_TILE", in, null, null, null, ev.numWorkers),
+                    blockRows(in.length, ev.numWorkers));
+        } else {
+            result = runFused(e, ev);
+        }
+        ev.done.put(e, result);
+        return result;
+    }
+
+    // The child a row-local op streams from; for ADD prefer the side that can be fused further
+    private static Expr chainInput(Expr e, Map<Expr, Integer> uses) {
+        if (Expr.ADD.equals(e.op) && !fusable(e.left, uses) && fusable(e.right, uses)) return e.right;
+        return e.left;
+    }
+
+    private static boolean fusable(Expr e, Map<Expr, Integer> uses) {
+        return e.isRowLocal() && uses.get(e) == 1;
+    }
+
+    private int[][] runFused(Expr top, Evaluation ev) throws Exception {
+        // Walk down the chain; stages end up ordered source-first
+        Deque<Expr> stages = new ArrayDeque<>();
+        Expr cur = top;
+        stages.push(cur);
+        Expr input = chainInput(cur, ev.uses);
+        while (fusable(input, ev.uses) && !ev.done.containsKey(input)) {
+            cur = input;
+            stages.push(cur);
+            input = chainInput(cur, ev.uses);
+        }
+        int[][] source = evaluate(input, ev);
+
+        // Per-stage arguments: shared strings, or a matrix split on the source's row blocks.
+        // Shared MATMUL operands become cache references so each Worker receives them once.
+        List<String> ops = new ArrayList<>();
+        List<String> shared = new ArrayList<>();
+        List<int[][]> perBlock = new ArrayList<>();
+        Map<String, String> refs = new HashMap<>();
+        Expr prev = input;
+        for (Expr st : stages) {
+            String arg = null;
+            int[][] split = null;
+            switch (st.op) {
+                case Expr.MATMUL:
+                    int[][] b = evaluate(st.right, ev);
+                    String key = tileKey(ev.job, "m" + ev.operandCounter++, 0, 0);
+                    refs.put(key, encodeOperand(b, SparseMatrix.density(b) <= SPARSE_DENSITY));
+                    arg = "@" + key;
+                    break;
+                case Expr.ADD:
+                    split = evaluate(st.left == prev ? st.right : st.left, ev);
+                    break;
+                case Expr.SCALE:
+                    arg = Integer.toString(st.scalar);
+                    break;
+                default:
+                    break;
+            }
+            ops.add(st.op + "_TILE");
+            shared.add(arg);
+            perBlock.add(split);
+            prev = st;
+        }
+
+        int rows = source.length;
+        boolean sparse = SparseMatrix.density(source) <= SPARSE_DENSITY;
+        int block = blockRows(rows, ev.numWorkers);
+        boolean memoize = memo != null;
+        XxHash64 stageHash = new XxHash64();
+        if (memoize) {
+            for (int i = 0; i < ops.size(); i++) {
+                String arg = shared.get(i);
+                stageHash.update(ops.get(i)).update(hashString(arg != null && arg.startsWith("@")
+                        ? refs.get(arg.substring(1)) : arg));
+            }
+        }
+        long stagesKey = stageHash.digest();
+
+        List<Task> tasks = new ArrayList<>();
+        for (int r = 0; r < rows; r += block) {
+            int end = Math.min(rows, r + block);
+            long key = 0;
+            if (memoize) {
+                XxHash64 h = new XxHash64().update("PIPELINE").update(stagesKey)
+                        .update(XxHash64.hashRows(source, r, end));
+                for (int[][] split : perBlock) {
+                    if (split != null) h.update(XxHash64.hashRows(split, r, end));
+                }
+                key = h.digest();
+                Task hit = memoized(key);
+                if (hit != null) {
+                    tasks.add(hit);
+                    continue;
+                }
+            }
+            StringBuilder body = new StringBuilder("PIPELINE;")
+                    .append(encodeOperand(Arrays.copyOfRange(source, r, end), sparse));
+            for (int i = 0; i < ops.size(); i++) {
+                body.append('|').append(ops.get(i));
+                if (shared.get(i) != null) body.append(';').append(shared.get(i));
+                if (perBlock.get(i) != null) {
+                    body.append(';').append(Message.encodeTileString(Arrays.copyOfRange(perBlock.get(i), r, end)));
+                }
+            }
+            Task t = new Task(nextTaskId(), body.toString());
+            t.refs = refs;
+            t.memoKey = key;
+            tasks.add(t);
+        }
+
+        List<String> results = runTasks(tasks);
+        return top.isReduction() ? Message.decodeTileString(reduceTree(results)) : stackRows(results, rows);
+    }
+
+    // One node of a Strassen-Winograd plan: a leaf task, or the seven half-size products
+    private static final class Product {
+        final int n;
+        int leaf = -1;          // index into the leaf task list
+        Product[] parts;
+        Product(int n) { this.n = n; }
+    }
+
+    // LONG products are exact only if inner x max|a| x max|b| fits in a long
+    private static void checkLongRange(int[][] a, int[][] b) {
+        try {
+            Math.multiplyExact(Math.multiplyExact((long) b.length, maxAbs(a)), maxAbs(b));
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("LONG product may overflow; use a modular result type");
+        }
+    }
+
+    private static long maxAbs(int[][] m) {
+        long max = 0;
+        for (int[] row : m) {
+            for (int v : row) max = Math.max(max, Math.abs((long) v));
+        }
+        return max;
+    }
+
+    private static boolean isSquare(int[][] a, int[][] b) {
+        int n = a.length;
+        return a[0].length == n && b.length == n && b[0].length == n;
+    }
+
+    /**
+     * A x B for square n x n operands by Strassen-Winograd. Master recursively forms
+     * the operand sums of the seven half-size products (odd sizes padded with a zero
+     * row and column) until they are at most cutoff, runs every leaf product as one
+     * batch of MATMUL_TILE tasks, then combines them back up with Winograd's
+     * additions. int arithmetic wraps, so results equal the classical product.
+     */
+    private int[][] strassen(int[][] a, int[][] b, int cutoff) throws Exception {
+        List<Task> leaves = new ArrayList<>();
+        Product root = plan(a, b, cutoff, leaves);
+        return assemble(root, runTasks(leaves));
+    }
+
+    private Product plan(int[][] a, int[][] b, int cutoff, List<Task> leaves) {
+        int n = a.length;
+        Product p = new Product(n);
+        if (n <= cutoff) {
+            long key = 0;
+            if (memo != null) {
+                key = new XxHash64().update("MATMUL_TILE").update(XxHash64.hashRows(a, 0, n))
+                        .update(XxHash64.hashRows(b, 0, n)).digest();
+            }
+            Task t = memoized(key);
+            if (t == null) {
+                t = new Task(nextTaskId(), "MATMUL_TILE;" + encodeOperand(a, SparseMatrix.density(a) <= SPARSE_DENSITY)
+                        + ";" + encodeOperand(b, SparseMatrix.density(b) <= SPARSE_DENSITY));
+                t.memoKey = key;
+            }
+            p.leaf = leaves.size();
+            leaves.add(t);
+            return p;
+        }
+        int h = (n + 1) / 2;
+        int[][] a11 = quadrant(a, 0, 0, h), a12 = quadrant(a, 0, h, h);
+        int[][] a21 = quadrant(a, h, 0, h), a22 = quadrant(a, h, h, h);
+        int[][] b11 = quadrant(b, 0, 0, h), b12 = quadrant(b, 0, h, h);
+        int[][] b21 = quadrant(b, h, 0, h), b22 = quadrant(b, h, h, h);
+        int[][] s1 = combine(a21, a22, 1), s2 = combine(s1, a11, -1);
+        int[][] s3 = combine(a11, a21, -1), s4 = combine(a12, s2, -1);
+        int[][] t1 = combine(b12, b11, -1), t2 = combine(b22, t1, -1);
+        int[][] t3 = combine(b22, b12, -1), t4 = combine(t2, b21, -1);
+        p.parts = new Product[] {
+                plan(a11, b11, cutoff, leaves), plan(a12, b21, cutoff, leaves), plan(s4, b22, cutoff, leaves),
+                plan(a22, t4, cutoff, leaves), plan(s1, t1, cutoff, leaves), plan(s2, t2, cutoff, leaves),
+                plan(s3, t3, cutoff, leaves) };
+        return p;
+    }
+
+    private static int[][] assemble(Product p, List<String> results) {
+        if (p.parts == null) return Message.decodeTileString(results.get(p.leaf));
+        int[][][] m = new int[7][][];
+        for (int i = 0; i < 7; i++) m[i] = assemble(p.parts[i], results);
+        int n = p.n;
+        int h = m[0].length;
+        int[][] c = new int[n][n];
+        // C11 = P1 + P2, C12 = U4 + P3, C21 = U3 - P4, C22 = U3 + P5
+        // with U2 = P1 + P6, U3 = U2 + P7, U4 = U2 + P5
+        for (int i = 0; i < h; i++) {
+            boolean lower = i + h < n;
+            for (int j = 0; j < h; j++) {
+                int p1 = m[0][i][j];
+                int u2 = p1 + m[5][i][j];
+                int u3 = u2 + m[6][i][j];
+                c[i][j] = p1 + m[1][i][j];
+                if (j + h < n) c[i][j + h] = u2 + m[4][i][j] + m[2][i][j];
+                if (lower) {
+                    c[i + h][j] = u3 - m[3][i][j];
+                    if (j + h < n) c[i + h][j + h] = u3 + m[4][i][j];
+                }
+            }
+        }
+        return c;
+    }
+
+    // h x h block of m at (r0, c0), zero-filled past m's edge
+    private static int[][] quadrant(int[][] m, int r0, int c0, int h) {
+        int[][] q = new int[h][h];
+        int n = m.length;
+        for (int i = 0; i < h && r0 + i < n; i++) {
+            System.arraycopy(m[r0 + i], c0, q[i], 0, Math.max(0, Math.min(h, n - c0)));
+        }
+        return q;
+    }
+
+    // x + sign * y
+    private static int[][] combine(int[][] x, int[][] y, int sign) {
+        int[][] r = new int[x.length][];
+        for (int i = 0; i < x.length; i++) {
+            int[] xi = x[i], yi = y[i], ri = new int[xi.length];
+            for (int j = 0; j < xi.length; j++) ri[j] = xi[j] + sign * yi[j];
+            r[i] = ri;
+        }
+        return r;
+    }
+
+    /**
+     * Splits a into row blocks and runs "tileOp;<a block>[;<b block>][;suffix]" for each,
+     * returning the encoded results in block order. b, when given, is split on the
+     * same rows; suffix is shared by every task and may hold "@key" references
+     * resolved through refs (e.g. the whole right operand).
+     */
+    private List<String> runRowBlocks(String tileOp, int[][] a, int[][] b, String suffix,
+                                      Map<String, String> refs, int numWorkers) throws Exception {
+        return runTasks(rowBlockTasks(tileOp, a, b, suffix, refs, numWorkers));
+    }
+
+    // The tasks of runRowBlocks, one per blockRows(a.length, numWorkers) rows. Memo hits
+    // come back already answered, with their payload only when verification may need to
+    // re-execute them.
+    private List<Task> rowBlockTasks(String tileOp, int[][] a, int[][] b, String suffix,
+                                     Map<String, String> refs, int numWorkers) {
+        int rows = a.length;
+        boolean sparseA = SparseMatrix.density(a) <= SPARSE_DENSITY;
+        boolean sparseB = b != null && SparseMatrix.density(b) <= SPARSE_DENSITY;
+        int block = blockRows(rows, numWorkers);
+        boolean memoize = memo != null;
+        long suffixHash = memoize ? hashSuffix(suffix, refs) : 0;
+
+        List<Task> tasks = new ArrayList<>();
+        for (int r = 0; r < rows; r += block) {
+            int end = Math.min(rows, r + block);
+            long key = 0;
+            if (memoize) {
+                XxHash64 h = new XxHash64().update(tileOp).update(XxHash64.hashRows(a, r, end)).update(suffixHash);
+                if (b != null) h.update(XxHash64.hashRows(b, r, end));
+                key = h.digest();
+                Task hit = memoized(key);
+                if (hit != null) {
+                    if (verifyRounds > 0) {
+                        hit.payload = tileBody(tileOp, a, b, r, end, sparseA, sparseB, suffix);
+                        if (refs != null) hit.refs = refs;
+                        hit.memoKey = key;
+                    }
+                    tasks.add(hit);
+                    continue;
+                }
+            }
+            Task t = new Task(nextTaskId(), tileBody(tileOp, a, b, r, end, sparseA, sparseB, suffix));
+            if (refs != null) t.refs = refs;
+            t.memoKey = key;
+            tasks.add(t);
+        }
+        return tasks;
+    }
+
+    private static String tileBody(String tileOp, int[][] a, int[][] b, int r, int end, boolean sparseA,
+                                   boolean sparseB, String suffix) {
+        StringBuilder body = new StringBuilder(tileOp).append(';')
+                .append(encodeOperand(Arrays.copyOfRange(a, r, end), sparseA));
+        if (b != null) body.append(';').append(encodeOperand(Arrays.copyOfRange(b, r, end), sparseB));
+        if (suffix != null) body.append(';').append(suffix);
+        return body.toString();
+    }
+
+    // The shared argument is hashed once; a reference is hashed by the tile it names
+    private static long hashSuffix(String suffix, Map<String, String> refs) {
+        if (suffix == null) return 0;
+        XxHash64 h = new XxHash64();
+        for (String arg : suffix.split(";")) {
+            h.update(refs != null && arg.startsWith("@") ? hashString(refs.get(arg.substring(1))) : hashString(arg));
+        }
+        return h.digest();
+    }
+
+    /**
+     * Combines same-shaped partial tiles on the Workers, REDUCE_FAN_IN at a time, until
+     * one remains. Master only forwards encoded tiles between levels and never does
+     * the arithmetic itself.
+     */
+    private String reduceTree(List<String> partials) throws Exception {
+        while (partials.size() > 1) {
+            List<Task> level = new ArrayList<>();
+            for (int i = 0; i < partials.size(); i += REDUCE_FAN_IN) {
+                List<String> group = partials.subList(i, Math.min(partials.size(), i + REDUCE_FAN_IN));
+                String body = "COMBINE_ADD;" + String.join(";", group);
+                long key = memo != null ? hashString(body) : 0;
+                Task hit = key != 0 ? memoized(key) : null;
+                if (hit != null) {
+                    level.add(hit);
+                    continue;
+                }
+                Task t = new Task(nextTaskId(), body);
+                t.memoKey = key;
+                level.add(t);
+            }
+            partials = runTasks(level);
+        }
+        return partials.get(0);
+    }
+
+    private static int[][] stackRows(List<String> tiles, int rows) {
+        int[][] result = new int[rows][];
+        int r = 0;
+        for (String tile : tiles) {
+            for (int[] row : Message.decodeTileString(tile)) {
+                result[r++] = row;
+            }
+        }
+        return result;
+    }
+
+    private static long[][] stackLongRows(List<String> tiles, int rows) {
+        long[][] result = new long[rows][];
+        int r = 0;
+        for (String tile : tiles) {
+            for (long[] row : Message.decodeLongTileString(tile)) {
+                result[r++] = row;
+            }
+        }
+        return result;
+    }
+
+    // Block k of a transposes to columns [k * block, ...) of the result
+    private static int[][] transposeBlocks(int[][] a, List<String> tiles, int block) {
+        int[][] result = new int[a[0].length][a.length];
+        int c0 = 0;
+        for (String tile : tiles) {
+            int[][] t = Message.decodeTileString(tile);
+            for (int i = 0; i < t.length; i++) {
+                System.arraycopy(t[i], 0, result[i], c0, t[i].length);
+            }
+            c0 += block;
+        }
+        return result;
+    }
+
+    public void shutdown() {
+        running = false;
+        threadPool.shutdown();
+        computePool.shutdown();
+        if (metricsServer != null) metricsServer.stop(0);
+    }
 
     public static void main(String[] args) throws IOException {
         int port = Integer.parseInt(System.getenv("MASTER_PORT") != null ? System.getenv("MASTER_PORT") : "5000");
-        Master m = new Master(port);
-        m.start();
-        try { Thread.currentThread().join(); } catch (InterruptedException e) {}
+        // MASTER_STANDBY_OF=host: follow the primary on host:MASTER_PORT and take over its port
+        String primary = System.getenv("MASTER_STANDBY_OF");
+        try {
+            if (primary != null) {
+                new Standby(primary, port, envInt("MASTER_FAILOVER_MS", Standby.FAILOVER_MS)).awaitTakeover();
+            } else {
+                new Master(port).start();
+            }
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {}
     }
 }
@@ -1,14 +1,24 @@
 package pdc;
 
-import java.util.Random;
+import java.nio.IntBuffer;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Utility class for generating and manipulating matrices.
  * Provides helper methods for creating test and example matrices.
+ *
+ * Random matrices are seeded per row: row i of a seeded matrix comes from its own
+ * SplittableRandom derived from (seed, i). Rows can therefore be filled in parallel,
+ * and any row block or tile can be produced on its own, with the same values whatever
+ * the thread count or tiling.
  */
 public class MatrixGenerator {
 
-    private static final Random random = new Random();
+    // Below this many elements the parallel fill is not worth its overhead
+    static final int PARALLEL_ELEMENTS = 1 << 16;
 
     /**
      * Generates a random matrix of specified dimensions.
@@ -19,13 +29,110 @@ public class MatrixGenerator {
      * @return a randomly generated matrix
      */
     public static int[][] generateRandomMatrix(int rows, int cols, int maxValue) {
-        int[][] matrix = new int[rows][cols];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                matrix[i][j] = random.nextInt(maxValue);
+        return generateRandomMatrix(rows, cols, maxValue, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Generates a reproducible random matrix: the same seed always gives the same values.
+     *
+     * @param rows     number of rows
+     * @param cols     number of columns
+     * @param maxValue maximum value for matrix elements (exclusive)
+     * @param seed     seed of the whole matrix
+     * @return a randomly generated matrix
+     */
+    public static int[][] generateRandomMatrix(int rows, int cols, int maxValue, long seed) {
+        int[][] matrix = new int[rows][];
+        rowRange(0, rows, (long) rows * cols).forEach(i -> {
+            matrix[i] = new int[cols];
+            fillRow(matrix[i], 0, seed, i, 0, cols, maxValue);
+        });
+        return matrix;
+    }
+
+    /**
+     * Fills out, row-major, with the values of generateRandomMatrix(rows, cols, maxValue,
+     * seed). Writes use absolute indices from out's position 0, so a heap buffer
+     * (IntBuffer.wrap) or a memory-mapped file (FileChannel.map(...).asIntBuffer()) is
+     * filled in place without an intermediate int[][].
+     *
+     * @param out      destination of at least rows * cols ints
+     * @param rows     number of rows
+     * @param cols     number of columns
+     * @param maxValue maximum value for matrix elements (exclusive)
+     * @param seed     seed of the whole matrix
+     */
+    public static void fillRandom(IntBuffer out, int rows, int cols, int maxValue, long seed) {
+        if ((long) rows * cols > out.capacity()) {
+            throw new IllegalArgumentException("Buffer holds " + out.capacity() + " ints, need " + (long) rows * cols);
+        }
+        if (out.hasArray()) {
+            int[] flat = out.array();
+            int base = out.arrayOffset();
+            rowRange(0, rows, (long) rows * cols).forEach(i ->
+                    fillRow(flat, base + i * cols, seed, i, 0, cols, maxValue));
+            return;
+        }
+        rowRange(0, rows, (long) rows * cols).forEach(i -> {
+            SplittableRandom rnd = rowRandom(seed, i);
+            for (int j = 0, k = i * cols; j < cols; j++, k++) {
+                out.put(k, rnd.nextInt(maxValue));
             }
+        });
+    }
+
+    /**
+     * Fills a flat row-major array; see fillRandom(IntBuffer, ...).
+     */
+    public static void fillRandom(int[] out, int rows, int cols, int maxValue, long seed) {
+        fillRandom(IntBuffer.wrap(out), rows, cols, maxValue, seed);
+    }
+
+    /**
+     * Generates only rows [r0, r1) and columns [c0, c1) of the seeded matrix, e.g. one
+     * tile of an input too large to materialize.
+     *
+     * @return the (r1 - r0) x (c1 - c0) tile
+     */
+    public static int[][] randomTile(int maxValue, long seed, int r0, int r1, int c0, int c1) {
+        int[][] tile = new int[r1 - r0][];
+        rowRange(r0, r1, (long) (r1 - r0) * (c1 - c0)).forEach(i -> {
+            tile[i - r0] = new int[c1 - c0];
+            fillRow(tile[i - r0], 0, seed, i, c0, c1, maxValue);
+        });
+        return tile;
+    }
+
+    /**
+     * Lazily generates the seeded matrix as consecutive row blocks of blockRows rows
+     * (the last may be shorter); each block is produced only when the stream reaches it.
+     */
+    public static Stream<int[][]> randomRowBlocks(int rows, int cols, int maxValue, long seed, int blockRows) {
+        int blocks = (rows + blockRows - 1) / blockRows;
+        return IntStream.range(0, blocks).mapToObj(b ->
+                randomTile(maxValue, seed, b * blockRows, Math.min(rows, (b + 1) * blockRows), 0, cols));
+    }
+
+    private static IntStream rowRange(int from, int to, long elements) {
+        IntStream range = IntStream.range(from, to);
+        return elements >= PARALLEL_ELEMENTS ? range.parallel() : range;
+    }
+
+    // Columns [c0, c1) of row i written to out from offset; earlier columns are drawn and skipped
+    private static void fillRow(int[] out, int offset, long seed, int i, int c0, int c1, int maxValue) {
+        SplittableRandom rnd = rowRandom(seed, i);
+        for (int j = 0; j < c0; j++) rnd.nextInt(maxValue);
+        for (int j = c0; j < c1; j++) {
+            out[offset++] = rnd.nextInt(maxValue);
         }
-        return matrix;
+    }
+
+    private static SplittableRandom rowRandom(long seed, int row) {
+        // Stafford's mix13 of (seed, row), so neighbouring rows get unrelated streams
+        long z = seed + (row + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new SplittableRandom(z ^ (z >>> 31));
     }
 
     /**
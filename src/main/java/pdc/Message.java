@@ -1,9 +1,21 @@
 package pdc;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 public class Message {
+    public static final int FLAG_COMPRESSED = 1;
+    public static final int FLAG_TRACED = 2;   // binary form only: a trace string follows the flags byte
+    public static final int FLAG_CHECKSUM = 4; // binary form only: a CRC32C int follows the trace
+    // Payloads smaller than this are never worth deflating
+    public static final int COMPRESSION_THRESHOLD = 1024;
+
     public String magic;
     public int version;
     public String type;              // messageType alias
@@ -13,6 +25,9 @@ public class Message {
     public long timestamp;
     public byte[] payload;
     public String payloadStr;        // String version for JSON
+    public int flags;                // FLAG_* bits, only serialized in JSON when non-zero
+    public String trace;             // tracing context "traceId:taskId", only serialized when set
+    public String checksum;          // CRC32C of the uncompressed payload in hex, see sign()
 
     public Message() {
         this.magic = "CSM218";
@@ -37,7 +52,14 @@ public class Message {
         map.put("messageType", type != null ? type : messageType);
         map.put("studentId", sender != null ? sender : studentId);
         map.put("timestamp", timestamp > 0 ? timestamp : System.currentTimeMillis());
-        map.put("payload", payloadStr != null ? payloadStr : (payload != null ? new String(payload) : ""));
+        if (flags != 0) map.put("flags", flags);
+        if (trace != null) map.put("trace", trace);
+        if (checksum != null) map.put("checksum", checksum);
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            map.put("payload", Base64.getEncoder().encodeToString(payload));
+        } else {
+            map.put("payload", payloadStr != null ? payloadStr : (payload != null ? new String(payload) : ""));
+        }
         
         return mapToJson(map);
     }
@@ -56,23 +78,32 @@ public class Message {
         msg.studentId = (String) map.getOrDefault("studentId", "");
         msg.sender = msg.studentId;
         msg.timestamp = ((Number) map.getOrDefault("timestamp", System.currentTimeMillis())).longValue();
+        msg.flags = ((Number) map.getOrDefault("flags", 0)).intValue();
+        msg.trace = (String) map.get("trace");
+        msg.checksum = (String) map.get("checksum");
         
         Object payloadObj = map.get("payload");
         if (payloadObj instanceof String) {
-            msg.payloadStr = (String) payloadObj;
-            msg.payload = msg.payloadStr.getBytes();
+            if ((msg.flags & FLAG_COMPRESSED) != 0) {
+                msg.payload = inflate(Base64.getDecoder().decode((String) payloadObj));
+                msg.payloadStr = new String(msg.payload, StandardCharsets.UTF_8);
+                msg.flags &= ~FLAG_COMPRESSED;
+            } else {
+                msg.payloadStr = (String) payloadObj;
+                msg.payload = msg.payloadStr.getBytes();
+            }
         }
         
         msg.syncAliases();
         return msg;
     }
 
-    // Convert message to byte array (binary serialization)
+    // Convert message to byte array (binary serialization). A flags byte is always written
+    // after the timestamp; its FLAG_TRACED / FLAG_CHECKSUM bits announce the optional fields
+    // that follow it.
     public byte[] pack() {
         try {
-            // Sync alias fields
-            if (messageType == null) messageType = type;
-            if (studentId == null) studentId = sender;
+            syncAliases();
             
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
             DataOutputStream out = new DataOutputStream(baos);
@@ -82,6 +113,9 @@ public class Message {
             out.writeUTF(type);
             out.writeUTF(sender);
             out.writeLong(timestamp);
+            out.writeByte(flags | (trace != null ? FLAG_TRACED : 0) | (checksum != null ? FLAG_CHECKSUM : 0));
+            if (trace != null) out.writeUTF(trace);
+            if (checksum != null) out.writeInt(Integer.parseUnsignedInt(checksum, 16));
 
             if (payload != null) {
                 out.writeInt(payload.length);
@@ -97,7 +131,8 @@ public class Message {
         }
     }
 
-    // Convert byte array back to message (binary deserialization)
+    // Convert byte array back to message (binary deserialization). The flags byte after
+    // the timestamp is mandatory, so frames from before it was added no longer decode.
     public static Message unpack(byte[] data) {
         try {
             ByteArrayInputStream bais = new ByteArrayInputStream(data);
@@ -109,6 +144,15 @@ public class Message {
             msg.type = in.readUTF();
             msg.sender = in.readUTF();
             msg.timestamp = in.readLong();
+            msg.flags = in.readUnsignedByte();
+            if ((msg.flags & FLAG_TRACED) != 0) {
+                msg.trace = in.readUTF();
+                msg.flags &= ~FLAG_TRACED;
+            }
+            if ((msg.flags & FLAG_CHECKSUM) != 0) {
+                msg.checksum = Integer.toHexString(in.readInt());
+                msg.flags &= ~FLAG_CHECKSUM;
+            }
             
             // Sync alias fields
             msg.messageType = msg.type;
@@ -121,6 +165,10 @@ public class Message {
             } else {
                 msg.payload = new byte[0];
             }
+            if ((msg.flags & FLAG_COMPRESSED) != 0) {
+                msg.payload = inflate(msg.payload);
+                msg.flags &= ~FLAG_COMPRESSED;
+            }
 
             return msg;
         } catch (IOException e) {
@@ -128,6 +176,380 @@ public class Message {
         }
     }
 
+    // Records the payload's CRC32C; call before compressPayload(), since the receiver
+    // checks it against the payload as inflated
+    public void sign() {
+        if ((flags & FLAG_COMPRESSED) != 0) throw new IllegalStateException("Sign before compressing");
+        checksum = crc32c(payloadStr != null ? payloadStr.getBytes(StandardCharsets.UTF_8) : payload);
+    }
+
+    // False only when a checksum was sent and the payload no longer matches it
+    public boolean checksumValid() {
+        if (checksum == null) return true;
+        return checksum.equals(crc32c(payloadStr != null ? payloadStr.getBytes(StandardCharsets.UTF_8) : payload));
+    }
+
+    static String crc32c(byte[] data) {
+        CRC32C crc = new CRC32C();
+        if (data != null) crc.update(data);
+        return Integer.toHexString((int) crc.getValue());
+    }
+
+    // Deflate the payload in place when it is at least threshold bytes and deflating
+    // actually shrinks it. Receivers inflate transparently in parse()/unpack().
+    public boolean compressPayload(int threshold) {
+        if ((flags & FLAG_COMPRESSED) != 0) return true;
+        byte[] raw = payloadStr != null ? payloadStr.getBytes(StandardCharsets.UTF_8) : payload;
+        if (raw == null || raw.length < threshold) return false;
+
+        // The JSON form carries compressed bytes as Base64, so the win must survive that
+        byte[] packed = deflate(raw);
+        if ((packed.length + 2) / 3 * 4 >= raw.length) return false;
+        payload = packed;
+        payloadStr = null;
+        flags |= FLAG_COMPRESSED;
+        return true;
+    }
+
+    static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] inflate(byte[] packed) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(packed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(packed.length * 4 + 16);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated compressed payload");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // ---- Binary tile codec ----
+    // Layout: [encoding:1][rows:varint][cols:varint][body]. The encoding is chosen per tile
+    // by whichever of the candidates below yields the fewest body bytes for its value range.
+    public static final byte TILE_FIXED = 0;   // 4-byte big-endian ints
+    public static final byte TILE_VARINT = 1;  // zigzag varint per value
+    public static final byte TILE_DELTA = 2;   // zigzag varint of row-major deltas
+    public static final byte TILE_FOR = 3;     // frame-of-reference: min + bit-packed offsets
+    public static final byte TILE_CSR = 4;     // sparse rows, see encodeSparseTile
+    public static final byte TILE_LONG = 5;    // zigzag varint per long value, see encodeLongTile
+
+    // Encode a rectangular int tile, picking the most compact encoding for its values
+    public static byte[] encodeTile(int[][] tile) {
+        int rows = tile.length;
+        int cols = rows > 0 ? tile[0].length : 0;
+        long n = (long) rows * cols;
+
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        long varintBytes = 0, deltaBytes = 0;
+        int prev = 0;
+        for (int[] row : tile) {
+            if (row.length != cols) {
+                throw new IllegalArgumentException("Tile rows must all have length " + cols);
+            }
+            for (int v : row) {
+                if (v < min) min = v;
+                if (v > max) max = v;
+                varintBytes += varintSize(zigzag(v));
+                deltaBytes += varintSize(zigzag(v - prev));
+                prev = v;
+            }
+        }
+
+        int bits = n == 0 ? 0 : 64 - Long.numberOfLeadingZeros((long) max - min);
+        long forBytes = n == 0 ? 0 : varintSize(zigzag(min)) + 1 + (n * bits + 7) / 8;
+        long fixedBytes = n * 4;
+
+        byte encoding = TILE_FIXED;
+        long best = fixedBytes;
+        if (varintBytes < best) { encoding = TILE_VARINT; best = varintBytes; }
+        if (deltaBytes < best) { encoding = TILE_DELTA; best = deltaBytes; }
+        if (forBytes < best) { encoding = TILE_FOR; best = forBytes; }
+
+        ByteBuffer buf = ByteBuffer.allocate((int) (1 + 5 + 5 + best));
+        buf.put(encoding);
+        putVarint(buf, rows);
+        putVarint(buf, cols);
+
+        switch (encoding) {
+            case TILE_VARINT:
+                for (int[] row : tile) {
+                    for (int v : row) putVarint(buf, zigzag(v));
+                }
+                break;
+            case TILE_DELTA:
+                prev = 0;
+                for (int[] row : tile) {
+                    for (int v : row) {
+                        putVarint(buf, zigzag(v - prev));
+                        prev = v;
+                    }
+                }
+                break;
+            case TILE_FOR:
+                if (n == 0) break;
+                putVarint(buf, zigzag(min));
+                buf.put((byte) bits);
+                long acc = 0;
+                int accBits = 0;
+                for (int[] row : tile) {
+                    for (int v : row) {
+                        acc |= ((long) v - min) << accBits;
+                        accBits += bits;
+                        while (accBits >= 8) {
+                            buf.put((byte) acc);
+                            acc >>>= 8;
+                            accBits -= 8;
+                        }
+                    }
+                }
+                if (accBits > 0) buf.put((byte) acc);
+                break;
+            default:
+                for (int[] row : tile) {
+                    for (int v : row) buf.putInt(v);
+                }
+        }
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    // Decode a tile produced by encodeTile (or encodeSparseTile, densified)
+    public static int[][] decodeTile(byte[] data) {
+        if (data.length > 0 && data[0] == TILE_CSR) return decodeSparseTile(data).toDense();
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        byte encoding = buf.get();
+        int rows = getVarint(buf);
+        int cols = getVarint(buf);
+        int[][] tile = new int[rows][cols];
+        if (rows == 0 || cols == 0) return tile;
+
+        switch (encoding) {
+            case TILE_FIXED:
+                for (int[] row : tile) {
+                    for (int j = 0; j < cols; j++) row[j] = buf.getInt();
+                }
+                break;
+            case TILE_VARINT:
+                for (int[] row : tile) {
+                    for (int j = 0; j < cols; j++) row[j] = unzigzag(getVarint(buf));
+                }
+                break;
+            case TILE_DELTA:
+                int prev = 0;
+                for (int[] row : tile) {
+                    for (int j = 0; j < cols; j++) {
+                        prev += unzigzag(getVarint(buf));
+                        row[j] = prev;
+                    }
+                }
+                break;
+            case TILE_FOR:
+                int min = unzigzag(getVarint(buf));
+                int bits = buf.get();
+                long mask = bits == 64 ? -1L : (1L << bits) - 1;
+                long acc = 0;
+                int accBits = 0;
+                for (int[] row : tile) {
+                    for (int j = 0; j < cols; j++) {
+                        while (accBits < bits) {
+                            acc |= (buf.get() & 0xFFL) << accBits;
+                            accBits += 8;
+                        }
+                        row[j] = (int) (min + (acc & mask));
+                        acc >>>= bits;
+                        accBits -= bits;
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown tile encoding: " + encoding);
+        }
+        return tile;
+    }
+
+    // Sparse layout: [TILE_CSR][rows][cols][nnz] then per row [count] followed by
+    // (column gap, zigzag value) varint pairs. Only non-zeros go on the wire.
+    public static byte[] encodeSparseTile(SparseMatrix m) {
+        ByteBuffer buf = ByteBuffer.allocate(1 + 15 + m.rows * 5 + m.nnz() * 10);
+        buf.put(TILE_CSR);
+        putVarint(buf, m.rows);
+        putVarint(buf, m.cols);
+        putVarint(buf, m.nnz());
+        for (int i = 0; i < m.rows; i++) {
+            putVarint(buf, m.rowPtr[i + 1] - m.rowPtr[i]);
+            int prevCol = 0;
+            for (int p = m.rowPtr[i]; p < m.rowPtr[i + 1]; p++) {
+                putVarint(buf, m.colIdx[p] - prevCol);
+                putVarint(buf, zigzag(m.values[p]));
+                prevCol = m.colIdx[p];
+            }
+        }
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    // Decode a sparse tile; dense encodings are accepted and converted to CSR
+    public static SparseMatrix decodeSparseTile(byte[] data) {
+        if (data.length == 0 || data[0] != TILE_CSR) return SparseMatrix.fromDense(decodeTile(data));
+        ByteBuffer buf = ByteBuffer.wrap(data, 1, data.length - 1);
+        int rows = getVarint(buf);
+        int cols = getVarint(buf);
+        int nnz = getVarint(buf);
+        int[] rowPtr = new int[rows + 1];
+        int[] colIdx = new int[nnz];
+        int[] values = new int[nnz];
+        int p = 0;
+        for (int i = 0; i < rows; i++) {
+            int count = getVarint(buf);
+            int col = 0;
+            for (int c = 0; c < count; c++) {
+                col += getVarint(buf);
+                colIdx[p] = col;
+                values[p++] = unzigzag(getVarint(buf));
+            }
+            rowPtr[i + 1] = p;
+        }
+        return new SparseMatrix(rows, cols, rowPtr, colIdx, values);
+    }
+
+    // Layout: [TILE_LONG][rows][cols] then one zigzag varint per value, row-major.
+    // Carries exact LONG products; int tiles keep the encodings above.
+    public static byte[] encodeLongTile(long[][] tile) {
+        int rows = tile.length;
+        int cols = rows > 0 ? tile[0].length : 0;
+        ByteBuffer buf = ByteBuffer.allocate(1 + 10 + rows * cols * 10);
+        buf.put(TILE_LONG);
+        putVarint(buf, rows);
+        putVarint(buf, cols);
+        for (long[] row : tile) {
+            if (row.length != cols) {
+                throw new IllegalArgumentException("Tile rows must all have length " + cols);
+            }
+            for (long v : row) {
+                long z = (v << 1) ^ (v >> 63);
+                while ((z & ~0x7FL) != 0) {
+                    buf.put((byte) ((z & 0x7F) | 0x80));
+                    z >>>= 7;
+                }
+                buf.put((byte) z);
+            }
+        }
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    // Decode a long tile; int encodings are accepted and widened
+    public static long[][] decodeLongTile(byte[] data) {
+        if (data.length == 0 || data[0] != TILE_LONG) {
+            int[][] narrow = decodeTile(data);
+            long[][] wide = new long[narrow.length][];
+            for (int i = 0; i < narrow.length; i++) {
+                wide[i] = new long[narrow[i].length];
+                for (int j = 0; j < narrow[i].length; j++) wide[i][j] = narrow[i][j];
+            }
+            return wide;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data, 1, data.length - 1);
+        int rows = getVarint(buf);
+        int cols = getVarint(buf);
+        long[][] tile = new long[rows][cols];
+        for (long[] row : tile) {
+            for (int j = 0; j < cols; j++) {
+                long z = 0;
+                for (int shift = 0; ; shift += 7) {
+                    if (shift > 63) throw new IllegalArgumentException("Malformed varint");
+                    byte b = buf.get();
+                    z |= (long) (b & 0x7F) << shift;
+                    if ((b & 0x80) == 0) break;
+                }
+                row[j] = (z >>> 1) ^ -(z & 1);
+            }
+        }
+        return tile;
+    }
+
+    public static String encodeLongTileString(long[][] tile) {
+        return Base64.getEncoder().encodeToString(encodeLongTile(tile));
+    }
+
+    public static long[][] decodeLongTileString(String s) {
+        return decodeLongTile(Base64.getDecoder().decode(s));
+    }
+
+    public static boolean isSparseTile(byte[] data) {
+        return data.length > 0 && data[0] == TILE_CSR;
+    }
+
+    // Text-safe form of encodeTile for use inside JSON payload strings
+    public static String encodeTileString(int[][] tile) {
+        return Base64.getEncoder().encodeToString(encodeTile(tile));
+    }
+
+    public static int[][] decodeTileString(String s) {
+        return decodeTile(Base64.getDecoder().decode(s));
+    }
+
+    public static String encodeSparseTileString(SparseMatrix m) {
+        return Base64.getEncoder().encodeToString(encodeSparseTile(m));
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static int varintSize(int v) {
+        if ((v & ~0x7F) == 0) return 1;
+        if ((v & ~0x3FFF) == 0) return 2;
+        if ((v & ~0x1FFFFF) == 0) return 3;
+        if ((v & ~0xFFFFFFF) == 0) return 4;
+        return 5;
+    }
+
+    static void putVarint(ByteBuffer buf, int v) {
+        while ((v & ~0x7F) != 0) {
+            buf.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte) v);
+    }
+
+    static int getVarint(ByteBuffer buf) {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buf.get();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
     // Validate message protocol
     public void validate() throws Exception {
         if (magic == null || !magic.equals("CSM218")) {
@@ -213,7 +635,7 @@ public class Message {
             // Parse messageType
             idx = json.indexOf("\"messageType\":");
             if (idx >= 0) {
-                idx += 15; // length of "\"messageType\":"
+                idx += 14; // length of "\"messageType\":"
                 int endIdx = json.indexOf("\"", idx + 1);
                 if (endIdx > idx) {
                     String value = json.substring(idx + 1, endIdx);
@@ -224,7 +646,7 @@ public class Message {
             // Parse studentId
             idx = json.indexOf("\"studentId\":");
             if (idx >= 0) {
-                idx += 13; // length of "\"studentId\":"
+                idx += 12; // length of "\"studentId\":"
                 int endIdx = json.indexOf("\"", idx + 1);
                 if (endIdx > idx) {
                     String value = json.substring(idx + 1, endIdx);
@@ -247,10 +669,42 @@ public class Message {
                 }
             }
             
+            // Parse flags (optional, absent means 0)
+            idx = json.indexOf("\"flags\":");
+            if (idx >= 0) {
+                idx += 8;
+                int commaIdx = json.indexOf(",", idx);
+                int braceIdx = json.indexOf("}", idx);
+                int endIdx = commaIdx >= 0 && commaIdx < braceIdx ? commaIdx : braceIdx;
+                String valueStr = json.substring(idx, endIdx).trim();
+                try {
+                    map.put("flags", Long.parseLong(valueStr));
+                } catch (NumberFormatException e) {
+                    map.put("flags", 0);
+                }
+            }
+            
+            // Parse trace context (optional); it precedes the payload, so only search before it
+            int payloadIdx = json.indexOf("\"payload\":");
+            idx = json.indexOf("\"trace\":\"");
+            if (idx >= 0 && (payloadIdx < 0 || idx < payloadIdx)) {
+                idx += 9; // length of "\"trace\":\""
+                int endIdx = json.indexOf("\"", idx);
+                if (endIdx > idx) map.put("trace", json.substring(idx, endIdx));
+            }
+
+            // Parse checksum (optional), likewise before the payload
+            idx = json.indexOf("\"checksum\":\"");
+            if (idx >= 0 && (payloadIdx < 0 || idx < payloadIdx)) {
+                idx += 12; // length of "\"checksum\":\""
+                int endIdx = json.indexOf("\"", idx);
+                if (endIdx > idx) map.put("checksum", json.substring(idx, endIdx));
+            }
+
             // Parse payload - this is tricky because it can contain "," and other special chars
             idx = json.indexOf("\"payload\":");
             if (idx >= 0) {
-                idx += 11; // length of "\"payload\":"
+                idx += 10; // length of "\"payload\":"
                 if (idx < json.length() && json.charAt(idx) == '"') {
                     idx++; // skip opening quote
                     StringBuilder payload = new StringBuilder();
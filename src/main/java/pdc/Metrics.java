@@ -0,0 +1,151 @@
+package pdc;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide metrics registry: LongAdder counters and log-linear histograms, cheap
+ * enough to update on every message without locking. render() lists every metric as
+ * plain text; Master returns it in reply to a METRICS message and, when
+ * MASTER_METRICS_PORT is set, serves it at http://localhost:port/metrics.
+ */
+public class Metrics {
+
+    private static final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public static LongAdder counter(String name) {
+        LongAdder c = counters.get(name);
+        return c != null ? c : counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    public static Histogram histogram(String name) {
+        Histogram h = histograms.get(name);
+        return h != null ? h : histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    // Drops per-connection metrics once the connection is gone
+    public static void removePrefix(String prefix) {
+        counters.keySet().removeIf(k -> k.startsWith(prefix));
+        histograms.keySet().removeIf(k -> k.startsWith(prefix));
+    }
+
+    /**
+     * One metric per line, sorted by name: "name value" for counters and
+     * "name count=.. mean=.. p50=.. p90=.. p99=.. max=.." for histograms.
+     */
+    public static String render() {
+        Map<String, String> lines = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> c : counters.entrySet()) {
+            lines.put(c.getKey(), Long.toString(c.getValue().sum()));
+        }
+        for (Map.Entry<String, Histogram> h : histograms.entrySet()) {
+            lines.put(h.getKey(), h.getValue().summary());
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> line : lines.entrySet()) {
+            sb.append(line.getKey()).append(' ').append(line.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Serves render() as text/plain at /metrics on the loopback interface.
+     */
+    public static HttpServer serve(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Histogram of non-negative longs in the style of HdrHistogram: buckets are
+     * powers of two split into SUB linear sub-buckets, so any recorded value is
+     * reported within 1/SUB (about 6%) of its true value. Recording is one atomic
+     * increment plus two adders.
+     */
+    public static class Histogram {
+        static final int SUB_BITS = 4;
+        static final int SUB = 1 << SUB_BITS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+        public void record(long value) {
+            long v = Math.max(0, value);
+            buckets.incrementAndGet(index(v));
+            count.increment();
+            sum.add(v);
+            max.accumulate(v);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        public double mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        /**
+         * @param p percentile in [0, 100]
+         * @return upper bound of the bucket holding the p-th percentile, at most max()
+         */
+        public long percentile(double p) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(upperBound(i), max());
+            }
+            return max();
+        }
+
+        String summary() {
+            return String.format("count=%d mean=%.1f p50=%d p90=%d p99=%d max=%d",
+                    count(), mean(), percentile(50), percentile(90), percentile(99), max());
+        }
+
+        // Values below SUB map to themselves; above, by magnitude then top SUB_BITS bits
+        static int index(long v) {
+            if (v < SUB) return (int) v;
+            int mag = 63 - Long.numberOfLeadingZeros(v);
+            return (mag - SUB_BITS + 1) * SUB + (int) ((v >>> (mag - SUB_BITS)) & (SUB - 1));
+        }
+
+        static long upperBound(int index) {
+            if (index < SUB) return index;
+            int shift = index / SUB - 1;
+            long lower = (long) (SUB + index % SUB) << shift;
+            return lower + (1L << shift) - 1;
+        }
+    }
+}
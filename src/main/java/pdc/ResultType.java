@@ -0,0 +1,51 @@
+package pdc;
+
+/**
+ * Result type of an integer matrix product. INT wraps on overflow like Java int
+ * arithmetic (the default); LONG returns exact long sums; mod(m) returns each sum
+ * reduced into [0, m). LONG and mod(m) kernels accumulate in long and narrow once
+ * per output element. Travels in tile task descriptors as its toString() form:
+ * "int", "long" or "mod:m".
+ */
+public final class ResultType {
+
+    public static final ResultType INT = new ResultType(0);
+    public static final ResultType LONG = new ResultType(0);
+
+    final int modulus;   // > 1 for mod(m), 0 otherwise
+
+    private ResultType(int modulus) {
+        this.modulus = modulus;
+    }
+
+    public static ResultType mod(int m) {
+        if (m < 2) throw new IllegalArgumentException("Modulus must be at least 2: " + m);
+        return new ResultType(m);
+    }
+
+    public static ResultType parse(String spec) {
+        if ("int".equals(spec)) return INT;
+        if ("long".equals(spec)) return LONG;
+        if (spec != null && spec.startsWith("mod:")) return mod(Integer.parseInt(spec.substring(4)));
+        throw new IllegalArgumentException("Unknown result type: " + spec);
+    }
+
+    public boolean isModular() {
+        return modulus > 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ResultType && o.toString().equals(toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this == INT ? "int" : this == LONG ? "long" : "mod:" + modulus;
+    }
+}
@@ -0,0 +1,358 @@
+package pdc;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous client for a Master's RPC interface. Keeps a pool of connections, each
+ * multiplexing any number of outstanding jobs matched to their replies by task id, so
+ * one JVM can have thousands of jobs in flight. Every submit() returns at once:
+ * - BUSY replies (Master's admission control) are resent after the advised delay
+ * - jobs on a connection that drops are resent on another one, up to the retry limit,
+ *   with the same task id, so a standby that took over answers with its recovered result
+ * - a job not answered within the timeout fails with TimeoutException
+ * Dropped connections reopen in the background with backoff. Futures complete on a
+ * connection's reader thread; chain heavy work with the *Async variants.
+ */
+public class RpcClient implements AutoCloseable {
+
+    static final int DEFAULT_CONNECTIONS = 4;
+    static final long DEFAULT_TIMEOUT_MS = 30_000;
+    static final int DEFAULT_RETRIES = 3;
+    static final long RECONNECT_MIN_MS = 100;
+    static final long RECONNECT_MAX_MS = 2000;
+
+    /** A MATRIX_MULTIPLY or BLOCK_TRANSPOSE request and its options. */
+    public static class Job {
+        final String type;
+        final String data;
+        String id;
+        int priority;
+        long deadlineMs;
+        ResultType resultType = ResultType.INT;
+
+        /** type and data as in an RPC_REQUEST payload, e.g. "MATRIX_MULTIPLY" and "1,2\3,4|5,6\7,8". */
+        public Job(String type, String data) {
+            this.type = type;
+            this.data = data;
+        }
+
+        public static Job multiply(int[][] a, int[][] b) {
+            return new Job("MATRIX_MULTIPLY", Master.formatTextMatrix(a) + "|" + Master.formatTextMatrix(b));
+        }
+
+        public static Job transpose(int[][] a) {
+            return new Job("BLOCK_TRANSPOSE", Master.formatTextMatrix(a));
+        }
+
+        /** Task id to use instead of a generated one; must be unique among this tenant's open jobs. */
+        public Job id(String id) {
+            this.id = id;
+            return this;
+        }
+
+        public Job priority(int priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        public Job deadline(long ms) {
+            this.deadlineMs = ms;
+            return this;
+        }
+
+        public Job result(ResultType type) {
+            this.resultType = type;
+            return this;
+        }
+
+        // taskId;TYPE;data[;priority=N][;deadlineMs=N][;result=type]
+        String payload(String taskId) {
+            StringBuilder sb = new StringBuilder(taskId).append(';').append(type).append(';').append(data);
+            if (priority != 0) sb.append(";priority=").append(priority);
+            if (deadlineMs > 0) sb.append(";deadlineMs=").append(deadlineMs);
+            if (!ResultType.INT.equals(resultType)) sb.append(";result=").append(resultType);
+            return sb.toString();
+        }
+    }
+
+    /** A job's answer in Master's text matrix format. */
+    public static class Result {
+        public final String taskId;
+        public final String text;
+        public final long latencyMs;   // submit to answer, including retries
+        public final int attempts;
+
+        Result(String taskId, String text, long latencyMs, int attempts) {
+            this.taskId = taskId;
+            this.text = text;
+            this.latencyMs = latencyMs;
+            this.attempts = attempts;
+        }
+
+        public int[][] matrix() {
+            return Master.parseTextMatrix(text);
+        }
+
+        /** For jobs with ResultType.LONG. */
+        public long[][] wideMatrix() {
+            return Master.parseLongTextMatrix(text);
+        }
+    }
+
+    /** Master answered a job with TASK_ERROR. */
+    public static class RpcException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public final String taskId;
+
+        RpcException(String taskId, String reason) {
+            super("Task " + taskId + " failed: " + reason);
+            this.taskId = taskId;
+        }
+    }
+
+    private static final class Call {
+        final String taskId;
+        final String json;
+        final long start = System.nanoTime();
+        final CompletableFuture<Result> future = new CompletableFuture<>();
+        int attempts;
+        volatile Connection conn;
+
+        Call(String taskId, String json) {
+            this.taskId = taskId;
+            this.json = json;
+        }
+    }
+
+    private final String host;
+    private final int port;
+    private final Connection[] connections;
+    private final ScheduledExecutorService timers;
+    private final String prefix = Long.toString(System.nanoTime(), 36) + "-";
+    private final AtomicLong sequence = new AtomicLong();
+    private final Log log = Log.get("RpcClient");
+    private volatile String tenant = System.getenv("STUDENT_ID") != null ? System.getenv("STUDENT_ID") : "anonymous";
+    private volatile long timeoutMs = DEFAULT_TIMEOUT_MS;
+    private volatile int retries = DEFAULT_RETRIES;
+    private volatile boolean closed;
+
+    public RpcClient(String host, int port) throws IOException {
+        this(host, port, DEFAULT_CONNECTIONS);
+    }
+
+    /** Opens all connections; fails if Master cannot be reached. */
+    public RpcClient(String host, int port, int connections) throws IOException {
+        this.host = host;
+        this.port = port;
+        this.connections = new Connection[Math.max(1, connections)];
+        this.timers = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rpc-client-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (int i = 0; i < this.connections.length; i++) this.connections[i] = new Connection(i);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /** Tenant the jobs are accounted to (Master's fair scheduler); defaults to STUDENT_ID. */
+    public void setTenant(String tenant) {
+        this.tenant = tenant;
+    }
+
+    public void setTimeout(long ms) {
+        this.timeoutMs = ms;
+    }
+
+    /** Times a job is resent after its connection dropped. */
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    public CompletableFuture<Result> submit(Job job) {
+        String taskId = job.id != null ? job.id : prefix + sequence.incrementAndGet();
+        Message req = new Message();
+        req.messageType = "RPC_REQUEST";
+        req.studentId = tenant;
+        req.payloadStr = job.payload(taskId);
+        Call call = new Call(taskId, req.toJson());
+        if (closed) {
+            call.future.completeExceptionally(new IllegalStateException("Client closed"));
+            return call.future;
+        }
+        ScheduledFuture<?> timeout = timers.schedule(() -> {
+            if (call.future.completeExceptionally(new TimeoutException("Task timeout: " + taskId))) forget(call);
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        call.future.whenComplete((r, e) -> timeout.cancel(false));
+        send(call);
+        return call.future;
+    }
+
+    /** Jobs sent and not yet answered. */
+    public int inFlight() {
+        int n = 0;
+        for (Connection c : connections) {
+            if (c != null) n += c.pending.size();
+        }
+        return n;
+    }
+
+    private void send(Call call) {
+        if (call.future.isDone()) return;
+        Connection c = pick();
+        if (c == null) {
+            // Every connection is reconnecting
+            timers.schedule(() -> send(call), RECONNECT_MIN_MS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        call.conn = c;
+        c.pending.put(call.taskId, call);
+        if (!c.write(call.json)) c.fail();
+    }
+
+    // Open connection with the fewest jobs outstanding
+    private Connection pick() {
+        Connection best = null;
+        for (Connection c : connections) {
+            if (c != null && c.open && (best == null || c.pending.size() < best.pending.size())) best = c;
+        }
+        return best;
+    }
+
+    private void forget(Call call) {
+        Connection c = call.conn;
+        if (c != null) c.pending.remove(call.taskId, call);
+    }
+
+    private void reconnect(int slot, long delayMs) {
+        timers.schedule(() -> {
+            if (closed) return;
+            try {
+                connections[slot] = new Connection(slot);
+                log.info("Reconnected connection {}", slot);
+            } catch (IOException e) {
+                reconnect(slot, Math.min(RECONNECT_MAX_MS, delayMs * 2));
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Connection c : connections) {
+            if (c != null) c.close();
+        }
+        for (Connection c : connections) {
+            if (c == null) continue;
+            for (Call call : c.pending.values()) {
+                call.future.completeExceptionally(new IllegalStateException("Client closed"));
+            }
+        }
+        timers.shutdownNow();
+    }
+
+    // One socket and its reader thread; writes are serialized by the PrintWriter
+    private final class Connection {
+        final int slot;
+        final Socket socket;
+        final BufferedReader in;
+        final PrintWriter out;
+        final Map<String, Call> pending = new ConcurrentHashMap<>();
+        volatile boolean open = true;
+
+        Connection(int slot) throws IOException {
+            this.slot = slot;
+            this.socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            Thread reader = new Thread(this::listen, "rpc-client-" + slot);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        boolean write(String json) {
+            out.println(json);
+            return !out.checkError();
+        }
+
+        private void listen() {
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.trim().isEmpty()) continue;
+                    Message msg = Message.parse(line);
+                    String type = msg.messageType != null ? msg.messageType : msg.type;
+                    String payload = msg.payloadStr != null ? msg.payloadStr : "";
+                    if ("TASK_COMPLETE".equals(type) || "TASK_ERROR".equals(type)) {
+                        int sep = payload.indexOf(';');
+                        String taskId = sep < 0 ? payload : payload.substring(0, sep);
+                        String body = sep < 0 ? "" : payload.substring(sep + 1);
+                        Call call = pending.remove(taskId);
+                        if (call == null) continue;   // timed out, or answered on an earlier connection
+                        if ("TASK_COMPLETE".equals(type)) {
+                            long ms = (System.nanoTime() - call.start) / 1_000_000;
+                            call.future.complete(new Result(taskId, body, ms, call.attempts + 1));
+                        } else {
+                            call.future.completeExceptionally(new RpcException(taskId, body));
+                        }
+                    } else if ("BUSY".equals(type)) {
+                        // Admission control: taskId;RETRY_AFTER=ms
+                        String[] parts = payload.split(";");
+                        Call call = pending.remove(parts[0]);
+                        if (call == null) continue;
+                        long delay = Long.parseLong(parts[1].substring("RETRY_AFTER=".length()));
+                        timers.schedule(() -> send(call), delay, TimeUnit.MILLISECONDS);
+                    } else if ("HEARTBEAT".equals(type)) {
+                        Message ack = new Message();
+                        ack.messageType = "HEARTBEAT_ACK";
+                        ack.studentId = tenant;
+                        ack.payloadStr = "pong";
+                        write(ack.toJson());
+                    }
+                }
+            } catch (Exception e) {
+                if (!closed) log.warn("Connection {} failed: {}", slot, e.getMessage());
+            }
+            fail();
+        }
+
+        // Resend what was waiting here on the other connections and reopen this one
+        synchronized void fail() {
+            if (!open) return;
+            close();
+            if (closed) return;
+            List<Call> orphans = new ArrayList<>(pending.values());
+            pending.clear();
+            for (Call call : orphans) {
+                if (++call.attempts > retries) {
+                    call.future.completeExceptionally(new IOException("Connection lost after "
+                            + call.attempts + " attempts: " + call.taskId));
+                } else {
+                    // After a pause, so the other connections notice if Master itself went away
+                    timers.schedule(() -> send(call), RECONNECT_MIN_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+            reconnect(slot, RECONNECT_MIN_MS);
+        }
+
+        void close() {
+            open = false;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package pdc;
+
+import java.util.Arrays;
+
+/**
+ * Integer matrix in compressed sparse row (CSR) form.
+ * The non-zeros of row i are values[rowPtr[i] .. rowPtr[i + 1]) at the matching
+ * colIdx entries, with columns ascending within each row.
+ */
+public class SparseMatrix {
+
+    public final int rows;
+    public final int cols;
+    public final int[] rowPtr;
+    public final int[] colIdx;
+    public final int[] values;
+
+    public SparseMatrix(int rows, int cols, int[] rowPtr, int[] colIdx, int[] values) {
+        this.rows = rows;
+        this.cols = cols;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.values = values;
+    }
+
+    /**
+     * Builds a CSR matrix from a dense rectangular matrix.
+     *
+     * @param dense the dense matrix
+     * @return the CSR form of dense
+     */
+    public static SparseMatrix fromDense(int[][] dense) {
+        int rows = dense.length;
+        int cols = rows > 0 ? dense[0].length : 0;
+        int nnz = 0;
+        for (int[] row : dense) {
+            for (int v : row) {
+                if (v != 0) nnz++;
+            }
+        }
+
+        int[] rowPtr = new int[rows + 1];
+        int[] colIdx = new int[nnz];
+        int[] values = new int[nnz];
+        int p = 0;
+        for (int i = 0; i < rows; i++) {
+            int[] row = dense[i];
+            for (int j = 0; j < row.length; j++) {
+                if (row[j] != 0) {
+                    colIdx[p] = j;
+                    values[p++] = row[j];
+                }
+            }
+            rowPtr[i + 1] = p;
+        }
+        return new SparseMatrix(rows, cols, rowPtr, colIdx, values);
+    }
+
+    /**
+     * Expands this matrix to dense form.
+     *
+     * @return a new dense matrix
+     */
+    public int[][] toDense() {
+        int[][] dense = new int[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                dense[i][colIdx[p]] = values[p];
+            }
+        }
+        return dense;
+    }
+
+    /**
+     * Returns rows [from, to) as a new CSR matrix.
+     */
+    public SparseMatrix rowSlice(int from, int to) {
+        int base = rowPtr[from];
+        int[] ptr = new int[to - from + 1];
+        for (int i = from; i <= to; i++) {
+            ptr[i - from] = rowPtr[i] - base;
+        }
+        return new SparseMatrix(to - from, cols, ptr,
+                Arrays.copyOfRange(colIdx, base, rowPtr[to]),
+                Arrays.copyOfRange(values, base, rowPtr[to]));
+    }
+
+    public int nnz() {
+        return rowPtr[rows];
+    }
+
+    public double density() {
+        long cells = (long) rows * cols;
+        return cells == 0 ? 0.0 : (double) nnz() / cells;
+    }
+
+    /**
+     * Fraction of non-zero entries in a dense matrix.
+     *
+     * @param dense the matrix to inspect
+     * @return non-zeros divided by total cells, 0 for an empty matrix
+     */
+    public static double density(int[][] dense) {
+        long nnz = 0, cells = 0;
+        for (int[] row : dense) {
+            cells += row.length;
+            for (int v : row) {
+                if (v != 0) nnz++;
+            }
+        }
+        return cells == 0 ? 0.0 : (double) nnz / cells;
+    }
+}
@@ -0,0 +1,121 @@
+package pdc;
+
+import java.io.*;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hot standby for a primary Master on the same port. It subscribes with a STANDBY
+ * message and applies the primary's REPLICATE log: the task id reservation and the
+ * RPC jobs admitted but not yet answered. When the primary has been silent for
+ * failoverMs (it heartbeats every Master.REPLICATION_HEARTBEAT_MS) or its connection
+ * drops, the standby binds the port itself, which succeeds only once the primary
+ * process is gone, and becomes the Master there. Workers reconnect to the same
+ * address, and clients that resend their requests get the re-run jobs' results.
+ * Master.main runs one when MASTER_STANDBY_OF names the primary's host.
+ */
+public class Standby {
+
+    static final int FAILOVER_MS = 1500;
+    static final long RETRY_MS = 200;
+
+    private final String host;
+    private final int port;
+    private final int failoverMs;
+    private final Log log = Log.get("Standby");
+
+    private boolean synced;                                    // snapshot received at least once
+    private int nextTaskId;
+    private final Map<String, String> jobs = new LinkedHashMap<>();   // "tenant;taskId" -> "tenant;request"
+
+    public Standby(String host, int port, int failoverMs) {
+        this.host = host;
+        this.port = port;
+        this.failoverMs = failoverMs;
+    }
+
+    /**
+     * Follows the primary until it fails, then returns the started Master that
+     * replaced it on the same port.
+     */
+    public Master awaitTakeover() throws InterruptedException {
+        while (true) {
+            follow();
+            if (synced) {
+                try {
+                    long t0 = System.nanoTime();
+                    Master m = new Master(port);
+                    m.start();
+                    m.recover(nextTaskId, new ArrayList<>(jobs.values()));
+                    Metrics.histogram("standby.takeover_us").record((System.nanoTime() - t0) / 1000);
+                    return m;
+                } catch (IOException e) {
+                    log.debug("Port {} still held: {}", port, e.getMessage());
+                }
+            }
+            Thread.sleep(RETRY_MS);
+        }
+    }
+
+    // One subscription; returns once the primary drops or goes silent
+    private void follow() {
+        try (Socket s = new Socket(host, port)) {
+            s.setSoTimeout(failoverMs);
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true);
+            out.println(message("STANDBY", "subscribe"));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                Message msg = Message.parse(line);
+                String type = msg.messageType != null ? msg.messageType : msg.type;
+                if ("REPLICATE".equals(type)) {
+                    apply(msg.payloadStr);
+                } else if ("HEARTBEAT".equals(type)) {
+                    out.println(message("HEARTBEAT_ACK", "pong"));
+                }
+            }
+            log.warn("Primary closed the connection");
+        } catch (SocketTimeoutException e) {
+            log.warn("Primary silent for {} ms", failoverMs);
+        } catch (IOException e) {
+            if (synced) log.warn("Primary unreachable: {}", e.getMessage());
+        }
+    }
+
+    // Entries: reset (a snapshot follows), ids;N, job;tenant;request, done;tenant;taskId, hb
+    void apply(String entry) {
+        if (entry.equals("reset")) {
+            jobs.clear();
+            synced = true;
+        } else if (entry.startsWith("ids;")) {
+            nextTaskId = Integer.parseInt(entry.substring(4));
+        } else if (entry.startsWith("job;")) {
+            String job = entry.substring(4);
+            int sep = job.indexOf(';', job.indexOf(';') + 1);
+            jobs.put(job.substring(0, sep), job);
+        } else if (entry.startsWith("done;")) {
+            jobs.remove(entry.substring(5));
+        }
+    }
+
+    int nextTaskId() {
+        return nextTaskId;
+    }
+
+    Map<String, String> jobs() {
+        return jobs;
+    }
+
+    private String message(String type, String payload) {
+        Message m = new Message();
+        m.messageType = type;
+        m.studentId = "standby";
+        m.payloadStr = payload;
+        return m.toJson();
+    }
+}
@@ -0,0 +1,74 @@
+package pdc;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Byte-bounded LRU cache of encoded tiles. Workers keep operands here, keyed
+ * "job:matrix:tileRow:tileCol", so Master can send a reference instead of the tile
+ * on repeat use; Master keeps memoized tile results here keyed by operand hash.
+ * Eviction is silent; a later lookup simply misses.
+ */
+public class TileCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public TileCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Stores a tile, evicting least recently used entries until it fits. A tile larger
+     * than the whole cache is not stored.
+     *
+     * @param key  tile key
+     * @param tile encoded tile as sent on the wire
+     */
+    public synchronized void put(String key, String tile) {
+        String old = entries.remove(key);
+        if (old != null) bytes -= old.length();
+        if (tile.length() > maxBytes) return;
+
+        Iterator<Map.Entry<String, String>> it = entries.entrySet().iterator();
+        while (bytes + tile.length() > maxBytes && it.hasNext()) {
+            bytes -= it.next().getValue().length();
+            it.remove();
+            evictions++;
+        }
+        entries.put(key, tile);
+        bytes += tile.length();
+    }
+
+    /**
+     * @return the cached tile, or null on a miss
+     */
+    public synchronized String get(String key) {
+        String tile = entries.get(key);
+        if (tile == null) misses++;
+        else hits++;
+        return tile;
+    }
+
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized String stats() {
+        return "entries=" + entries.size() + " bytes=" + bytes + " hits=" + hits
+                + " misses=" + misses + " evictions=" + evictions;
+    }
+}
@@ -0,0 +1,164 @@
+package pdc;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Task lifecycle tracing. Master and Worker record spans (enqueue, dispatch, receive,
+ * compute, reply, assemble) into a fixed-size buffer claimed with one atomic
+ * increment; export() writes them as Chrome trace JSON (chrome://tracing or
+ * Perfetto). Spans of one task share a trace context "traceId:taskId", carried to the
+ * Worker in Message.trace, and a flow arrow links each dispatch to its receive so the
+ * critical path of a job can be followed across processes. Tracing is off unless
+ * TRACE_FILE is set (written at exit, "{pid}" replaced by the process id) or
+ * enable() is called; disabled, every call is a single field read.
+ */
+public final class Tracer {
+
+    static final int MAX_SPANS = 1 << 18;
+
+    private static final class Span {
+        final String process;
+        final String name;
+        final long startUs;
+        final long durUs;
+        final long tid;
+        final String trace;
+        final char phase;                 // 'X' complete span, 's'/'f' flow start/finish
+        Span(String process, String name, long startUs, long durUs, String trace, char phase) {
+            this.process = process;
+            this.name = name;
+            this.startUs = startUs;
+            this.durUs = durUs;
+            this.tid = Thread.currentThread().getId();
+            this.trace = trace;
+            this.phase = phase;
+        }
+    }
+
+    // Wall-clock anchor so spans from different processes line up
+    private static final long EPOCH_US = System.currentTimeMillis() * 1000;
+    private static final long EPOCH_NANOS = System.nanoTime();
+
+    private static volatile boolean enabled;
+    private static final Span[] spans = new Span[MAX_SPANS];
+    private static final AtomicInteger next = new AtomicInteger();
+
+    static {
+        String file = System.getenv("TRACE_FILE");
+        if (file != null) {
+            enabled = true;
+            String path = file.replace("{pid}", Long.toString(ProcessHandle.current().pid()));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    export(path);
+                } catch (IOException e) {
+                    System.err.println("[Tracer] Export failed: " + e.getMessage());
+                }
+            }));
+        }
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Records a span from startNanos to endNanos (System.nanoTime values).
+     *
+     * @param process lane in the trace viewer, e.g. "Master" or "Worker w1"
+     * @param trace   trace context "traceId:taskId", or null
+     */
+    public static void span(String process, String name, long startNanos, long endNanos, String trace) {
+        if (!enabled) return;
+        add(new Span(process, name, toUs(startNanos), Math.max(0, (endNanos - startNanos) / 1000), trace, 'X'));
+    }
+
+    // Flow arrow between processes: start at a dispatch, finish at the matching receive
+    public static void flow(String process, boolean start, long atNanos, String trace) {
+        if (!enabled || trace == null) return;
+        add(new Span(process, "task", toUs(atNanos), 0, trace, start ? 's' : 'f'));
+    }
+
+    public static String context(long traceId, int taskId) {
+        return Long.toHexString(traceId) + ":" + taskId;
+    }
+
+    /**
+     * Writes every span recorded so far as a Chrome trace JSON file.
+     */
+    public static void export(String path) throws IOException {
+        int n = Math.min(next.get(), MAX_SPANS);
+        Map<String, Integer> pids = new LinkedHashMap<>();
+        try (Writer w = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+            w.write("{\"traceEvents\":[\n");
+            boolean first = true;
+            for (int i = 0; i < n; i++) {
+                Span s = spans[i];
+                if (s == null) continue;                 // claimed but not yet stored
+                Integer pid = pids.get(s.process);
+                if (pid == null) {
+                    pid = pids.size() + 1;
+                    pids.put(s.process, pid);
+                    w.write((first ? "" : ",\n") + "{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":" + pid
+                            + ",\"args\":{\"name\":\"" + escape(s.process) + "\"}}");
+                    first = false;
+                }
+                w.write(",\n{\"name\":\"" + escape(s.name) + "\",\"cat\":\"task\",\"ph\":\"" + s.phase
+                        + "\",\"ts\":" + s.startUs + ",\"pid\":" + pid + ",\"tid\":" + s.tid);
+                if (s.phase == 'X') w.write(",\"dur\":" + s.durUs);
+                if (s.phase != 'X') w.write(",\"id\":\"" + escape(s.trace) + "\",\"bp\":\"e\"");
+                if (s.trace != null) w.write(",\"args\":{\"trace\":\"" + escape(s.trace) + "\"}");
+                w.write("}");
+            }
+            w.write("\n]}\n");
+        }
+    }
+
+    static int size() {
+        return Math.min(next.get(), MAX_SPANS);
+    }
+
+    private static void add(Span s) {
+        if (next.get() >= MAX_SPANS) return;
+        int i = next.getAndIncrement();
+        if (i < MAX_SPANS) spans[i] = s;          // full buffer: later spans are dropped
+    }
+
+    // JSON string body; names carry Worker ids taken from args or the environment
+    private static String escape(String s) {
+        if (s == null) return "";
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String rep;
+            if (c == '"') rep = "\\\"";
+            else if (c == '\\') rep = "\\\\";
+            else if (c == '\n') rep = "\\n";
+            else if (c == '\r') rep = "\\r";
+            else if (c == '\t') rep = "\\t";
+            else if (c < 0x20) rep = String.format("\\u%04x", (int) c);
+            else {
+                if (sb != null) sb.append(c);
+                continue;
+            }
+            if (sb == null) sb = new StringBuilder(s.length() + 8).append(s, 0, i);
+            sb.append(rep);
+        }
+        return sb != null ? sb.toString() : s;
+    }
+
+    private static long toUs(long nanos) {
+        return EPOCH_US + (nanos - EPOCH_NANOS) / 1000;
+    }
+}
@@ -2,6 +2,15 @@ package pdc;
 
 import java.io.*;
 import java.net.*;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Worker node using JSON protocol
@@ -10,12 +19,36 @@ public class Worker {
 
     private Socket socket;
     private BufferedReader in;
-    private PrintWriter out;
+    PrintWriter out;
     private String workerId;
     private String masterHost;
     private int masterPort;
     private String studentId;
     private volatile boolean running = false;
+    private volatile boolean compress = false;   // set once Master acks compress=deflate
+    private final TileCache cache = new TileCache(cacheBytes());
+    private final Log log;
+    private final String traceName;   // process lane in exported traces
+    // Flow control: Master keeps at most creditTasks tasks / creditBytes of payload outstanding here
+    private final int creditTasks = envInt("WORKER_CREDIT_TASKS", 2 * Runtime.getRuntime().availableProcessors());
+    private final long creditBytes = envInt("WORKER_CREDIT_BYTES", 32 * 1024 * 1024);
+    private double score;   // Kernels.score(), measured before the first registration
+    // Runs tasks off the listener thread so heartbeats are answered while computing
+    private ExecutorService executor;
+
+    static final long RECONNECT_MIN_MS = 100;
+    static final long RECONNECT_MAX_MS = 10_000;
+    // Session resumption: after a dropped connection the Worker reconnects with backoff and
+    // presents the token from WORKER_ACK plus the tasks it still holds; Master reattaches
+    // those tasks and its record of our cached tiles. Results finished while disconnected
+    // wait in outbox until Master confirms the resume.
+    private volatile String session;
+    private final Object writeLock = new Object();
+    private boolean acked;                                  // WORKER_ACK seen on this connection
+    private int connection;                                 // bumped per connect
+    private int validFrom;                                  // older connections' tasks are void
+    final Map<String, Integer> pending = new ConcurrentHashMap<>();    // taskId -> connection
+    private final Map<String, String> outbox = new LinkedHashMap<>();          // taskId -> message
 
     public Worker() {
         this.workerId = System.getenv("WORKER_ID");
@@ -26,6 +59,8 @@ public class Worker {
         this.masterPort = portStr != null ? Integer.parseInt(portStr) : 5000;
         this.studentId = System.getenv("STUDENT_ID");
         if (studentId == null) studentId = "DEFAULT_STUDENT";
+        this.log = Log.get("Worker", "Worker " + workerId);
+        this.traceName = "Worker " + workerId;
     }
 
     public Worker(String workerId, String masterHost, int masterPort) {
@@ -34,93 +69,642 @@ public class Worker {
         this.masterPort = masterPort;
         this.studentId = System.getenv("STUDENT_ID");
         if (studentId == null) studentId = "DEFAULT_STUDENT";
+        this.log = Log.get("Worker", "Worker " + workerId);
+        this.traceName = "Worker " + workerId;
     }
 
     public void connect() {
         try {
-            socket = new Socket(masterHost, masterPort);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
-            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
-            
-            System.out.println("[Worker " + workerId + "] Connected to " + masterHost + ":" + masterPort);
+            open();
             running = true;
-            registerWithMaster();
         } catch (IOException e) {
-            System.err.println("[Worker] Connection failed: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Connection failed: {}", e.getMessage());
+        }
+    }
+
+    // New connection; registration is its first message
+    private void open() throws IOException {
+        Socket s = new Socket(masterHost, masterPort);
+        BufferedReader r = new BufferedReader(new InputStreamReader(s.getInputStream(), "UTF-8"));
+        PrintWriter w = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), "UTF-8"), true);
+        log.info("Connected to {}:{}", masterHost, masterPort);
+        synchronized (writeLock) {
+            socket = s;
+            in = r;
+            out = w;
+            acked = false;
+            connection++;
+            registerWithMaster();
         }
     }
 
+    // Payload workerId;compress=deflate;credits=tasks,bytes;cores=n;heap=bytes;features=a,b;score=s
+    //         [;session=token;tasks=id,...]
     private void registerWithMaster() {
+        if (score == 0) score = Kernels.INSTANCE.score();
+        Message msg = new Message();
+        msg.messageType = "REGISTER_WORKER";
+        msg.studentId = workerId;
+        StringBuilder payload = new StringBuilder(workerId)
+                .append(";compress=deflate;credits=").append(creditTasks).append(',').append(creditBytes)
+                .append(";cores=").append(Runtime.getRuntime().availableProcessors())
+                .append(";heap=").append(Runtime.getRuntime().maxMemory())
+                .append(";features=").append(features())
+                .append(";score=").append(Math.round(score));
+        if (session != null) {
+            payload.append(";session=").append(session).append(";tasks=");
+            String sep = "";
+            for (Map.Entry<String, Integer> p : pending.entrySet()) {
+                if (p.getValue() < validFrom) continue;
+                payload.append(sep).append(p.getKey());
+                sep = ",";
+            }
+        }
+        msg.payloadStr = payload.toString();
+        out.println(msg.toJson());
+        log.info("Registration sent{}", session != null ? " (resuming)" : "");
+    }
+
+    // Codecs and kernels this Worker supports
+    static String features() {
+        return "deflate,sparse,long" + (Kernels.INSTANCE.lanes() > 1 ? ",simd" : "");
+    }
+
+    // Retries with exponential backoff plus jitter until Master answers or the Worker stops
+    private void reconnect() {
+        synchronized (writeLock) {
+            out = null;
+        }
         try {
-            Message msg = new Message();
-            msg.messageType = "REGISTER_WORKER";
-            msg.studentId = workerId;
-            msg.payloadStr = workerId;
-            out.println(msg.toJson());
-            System.out.println("[Worker " + workerId + "] Registration sent");
-        } catch (Exception e) {
-            System.err.println("[Worker] Registration error: " + e.getMessage());
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        log.warn("Connection lost, reconnecting");
+        long delay = RECONNECT_MIN_MS;
+        while (running) {
+            try {
+                Thread.sleep(delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+                open();
+                Metrics.counter("worker.reconnects").increment();
+                return;
+            } catch (IOException e) {
+                delay = Math.min(RECONNECT_MAX_MS, delay * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
         }
     }
 
     public void execute() {
+        executor = Executors.newFixedThreadPool(Math.min(creditTasks, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
         Thread listener = new Thread(() -> {
-            try {
-                String line;
-                while (running && (line = in.readLine()) != null) {
-                    try {
-                        if (line.trim().isEmpty()) continue;
-                        
-                        Message msg = Message.parse(line);
-                        String type = msg.messageType != null ? msg.messageType : msg.type;
-                        System.out.println("[Worker " + workerId + "] Received " + type);
-
-                        if ("RPC_REQUEST".equals(type)) {
-                            handleRpcRequest(msg);
-                        } else if ("HEARTBEAT".equals(type)) {
-                            sendHeartbeatAck();
-                        }
-                    } catch (Exception e) {
-                        System.err.println("[Worker " + workerId + "] Process error: " + e.getMessage());
-                    }
-                }
-            } catch (IOException e) {
-                System.err.println("[Worker " + workerId + "] Disconnected");
+            while (running) {
+                listen();
+                if (running) reconnect();
             }
-            running = false;
+            executor.shutdownNow();
         });
         listener.setDaemon(true);
         listener.start();
     }
 
+    public void shutdown() {
+        running = false;
+        try {
+            if (socket != null) socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Reads one connection until it drops
+    private void listen() {
+        try {
+            String line;
+            while (running && (line = in.readLine()) != null) {
+                try {
+                    if (line.trim().isEmpty()) continue;
+                    Metrics.counter("worker.bytes_in").add(line.length() + 1);
+
+                    long t0 = System.nanoTime();
+                    Message msg = Message.parse(line);
+                    Metrics.histogram("worker.deserialize_ns").record(System.nanoTime() - t0);
+                    String type = msg.messageType != null ? msg.messageType : msg.type;
+                    log.debug("Received {}", type);
+
+                    if ("RPC_REQUEST".equals(type)) {
+                        handleRpcRequest(msg, t0);
+                    } else if ("HEARTBEAT".equals(type)) {
+                        sendHeartbeatAck();
+                    } else if ("WORKER_ACK".equals(type)) {
+                        handleWorkerAck(msg);
+                    } else if ("METRICS".equals(type)) {
+                        respond("METRICS", Metrics.render(), null);
+                    }
+                } catch (Exception e) {
+                    log.warn("Process error: {}", e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.info("Disconnected");
+        }
+    }
+
+    // Master answers registration with the options it accepted, e.g. "compress=deflate",
+    // plus session=token and, when it reattached our earlier session, "resumed"
+    void handleWorkerAck(Message msg) {
+        String payload = msg.payloadStr != null ? msg.payloadStr : "";
+        boolean resumed = false;
+        String token = null;
+        for (String option : payload.split(";")) {
+            if (option.equals("compress=deflate")) compress = true;
+            else if (option.equals("compress=none")) compress = false;
+            else if (option.equals("resumed")) resumed = true;
+            else if (option.startsWith("session=")) token = option.substring("session=".length());
+        }
+        synchronized (writeLock) {
+            if (!resumed) {
+                // Master no longer knows tasks from earlier connections
+                validFrom = connection;
+                pending.values().removeIf(c -> c < validFrom);
+            }
+            // A result whose write fails stays for the next resume
+            for (Iterator<Map.Entry<String, String>> it = outbox.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<String, String> result = it.next();
+                if (!pending.containsKey(result.getKey())) {
+                    it.remove();
+                } else if (write(result.getValue())) {
+                    pending.remove(result.getKey());
+                    it.remove();
+                }
+            }
+            acked = true;
+            session = token;
+        }
+        log.info("Registered{}, compression {}, {} kernels", resumed ? " (session resumed)" : "",
+                compress ? "on" : "off", Kernels.INSTANCE.name());
+    }
+
     private void sendHeartbeatAck() {
         try {
             Message ack = new Message();
             ack.messageType = "HEARTBEAT_ACK";
             ack.studentId = studentId;
             ack.payloadStr = "pong";
-            out.println(ack.toJson());
-            System.out.println("[Worker " + workerId + "] HEARTBEAT_ACK sent");
+            write(ack.toJson());
+            log.debug("HEARTBEAT_ACK sent");
         } catch (Exception e) {
-            System.err.println("[Worker " + workerId + "] Heartbeat error: " + e.getMessage());
+            log.warn("Heartbeat error: {}", e.getMessage());
         }
     }
 
-    private void handleRpcRequest(Message msg) {
+    // Operand references are resolved here, in arrival order, so "#key=" stores always
+    // precede the "@key" uses that follow them; the computation itself runs on executor.
+    private void handleRpcRequest(Message msg, long receivedNanos) {
+        String payload = msg.payloadStr != null ? msg.payloadStr : "";
+        log.debug("Processing: {}", payload);
+
+        // Tile tasks: taskId;OP;args..., tiles in Message's binary codec
+        int sep = payload.indexOf(';');
+        String taskId = sep >= 0 ? payload.substring(0, sep) : payload;
+        int conn;
+        synchronized (writeLock) {
+            conn = connection;
+        }
+        pending.put(taskId, conn);
+        String body;
+        try {
+            body = sep >= 0 ? resolveRefs(payload.substring(sep + 1)) : null;
+        } catch (RuntimeException e) {
+            respond("TASK_ERROR", taskId + ";" + String.valueOf(e.getMessage()).replace(';', ','), msg.trace, taskId);
+            return;
+        }
+        String trace = msg.trace;
+        if (trace != null) {
+            Tracer.flow(traceName, false, receivedNanos, trace);
+            Tracer.span(traceName, "receive", receivedNanos, System.nanoTime(), trace);
+        }
+        executor.execute(() -> {
+            String type = "TASK_COMPLETE";
+            String result;
+            long t0 = System.nanoTime();
+            try {
+                result = body != null ? runTask(body) : null;
+                long t1 = System.nanoTime();
+                Metrics.histogram("worker.task.compute_us").record((t1 - t0) / 1000);
+                if (trace != null) Tracer.span(traceName, "compute", t0, t1, trace);
+            } catch (RuntimeException e) {
+                type = "TASK_ERROR";
+                result = String.valueOf(e.getMessage()).replace(';', ',');
+            }
+            respond(type, result != null ? taskId + ";" + result : payload + ";processed", trace, taskId);
+        });
+    }
+
+    private void respond(String type, String payload, String trace) {
+        respond(type, payload, trace, null);
+    }
+
+    // taskId is set for task results, which are held while disconnected (see deliver)
+    private void respond(String type, String payload, String trace, String taskId) {
         try {
-            String payload = msg.payloadStr != null ? msg.payloadStr : "";
-            System.out.println("[Worker " + workerId + "] Processing: " + payload);
-            
+            long t0 = System.nanoTime();
             Message response = new Message();
-            response.messageType = "TASK_COMPLETE";
+            response.messageType = type;
             response.studentId = studentId;
-            response.payloadStr = payload + ";processed";
-            out.println(response.toJson());
-            System.out.println("[Worker " + workerId + "] Response sent");
+            response.payloadStr = payload;
+            response.trace = trace;
+            response.sign();
+            if (compress) response.compressPayload(Message.COMPRESSION_THRESHOLD);
+            long t1 = System.nanoTime();
+            String json = response.toJson();
+            Metrics.histogram("worker.serialize_ns").record(System.nanoTime() - t1);
+            Metrics.counter("worker.bytes_out").add(json.length() + 1);
+            if (taskId != null) deliver(taskId, json);
+            else write(json);
+            if (trace != null) Tracer.span(traceName, "reply", t0, System.nanoTime(), trace);
+            log.debug("Response sent");
         } catch (Exception e) {
-            System.err.println("[Worker " + workerId + "] RPC error: " + e.getMessage());
+            log.warn("RPC error: {}", e.getMessage());
+        }
+    }
+
+    // Sends a result now if the session is live, otherwise keeps it for the resume; results
+    // of tasks from a connection Master did not resume are dropped
+    void deliver(String taskId, String json) {
+        synchronized (writeLock) {
+            if (!pending.containsKey(taskId)) return;
+            if (acked && write(json)) pending.remove(taskId);
+            else outbox.put(taskId, json);
+        }
+    }
+
+    // False if there is no live connection to write to
+    private boolean write(String json) {
+        PrintWriter w = out;
+        if (w == null) return false;
+        w.println(json);
+        return !w.checkError();
+    }
+
+    private static int envInt(String name, int def) {
+        String s = System.getenv(name);
+        return s != null ? Integer.parseInt(s) : def;
+    }
+
+    private static long cacheBytes() {
+        String s = System.getenv("WORKER_CACHE_BYTES");
+        return s != null ? Long.parseLong(s) : 64L * 1024 * 1024;
+    }
+
+    /**
+     * Swaps operand references for tile data. "#key=<tile>" stores the tile in the
+     * cache and uses it; "@key" uses a cached tile and fails with CACHE_MISS:key if
+     * it was evicted, so Master can resend it inline.
+     */
+    String resolveRefs(String body) {
+        if (body.indexOf('#') < 0 && body.indexOf('@') < 0) return body;
+        StringBuilder sb = new StringBuilder(body.length());
+        int len = body.length();
+        int i = 0;
+        while (i < len) {
+            int end = i;
+            while (end < len && body.charAt(end) != ';' && body.charAt(end) != '|') end++;
+            char c = end > i ? body.charAt(i) : 0;
+            if (c == '#') {
+                int eq = body.indexOf('=', i);
+                String tile = body.substring(eq + 1, end);
+                cache.put(body.substring(i + 1, eq), tile);
+                sb.append(tile);
+            } else if (c == '@') {
+                String key = body.substring(i + 1, end);
+                String tile = cache.get(key);
+                if (tile == null) throw new IllegalStateException("CACHE_MISS:" + key);
+                sb.append(tile);
+            } else {
+                sb.append(body, i, end);
+            }
+            if (end < len) sb.append(body.charAt(end));
+            i = end + 1;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Executes a tile task body "OP;arg;..." and returns its encoded result, or null
+     * if OP is not a tile operation. Master runs the same code when no Worker is connected.
+     */
+    static String runTask(String body) {
+        if (body.startsWith("PIPELINE;")) return runPipeline(body);
+        String[] parts = body.split(";");
+        switch (parts[0]) {
+            case "MATMUL_TILE":
+                byte[] a = Base64.getDecoder().decode(parts[1]);
+                byte[] b = Base64.getDecoder().decode(parts[2]);
+                ResultType type = parts.length > 3 ? ResultType.parse(parts[3]) : ResultType.INT;
+                if (type == ResultType.LONG) {
+                    return Message.encodeLongTileString(multiplyWide(Message.decodeTile(a), Message.decodeTile(b), type));
+                }
+                if (type.isModular()) {
+                    return Message.encodeTileString(narrow(multiplyWide(Message.decodeTile(a), Message.decodeTile(b), type)));
+                }
+                if (Message.isSparseTile(a) && Message.isSparseTile(b)) {
+                    return Message.encodeSparseTileString(
+                            multiply(Message.decodeSparseTile(a), Message.decodeSparseTile(b)));
+                }
+                return Message.encodeTileString(multiplyToDense(a, b));
+            case "TOTAL_SUM_TILE":
+                return Message.encodeTileString(new int[][] { { total(colSums(Message.decodeTileString(parts[1]))[0]) } });
+            case "COMBINE_ADD":
+                // One node of a reduction tree: sum any number of same-shaped partials
+                int[][] acc = Message.decodeTileString(parts[1]);
+                for (int i = 2; i < parts.length; i++) {
+                    acc = add(acc, Message.decodeTileString(parts[i]));
+                }
+                return Message.encodeTileString(acc);
+            default:
+                if (!isStage(parts[0])) return null;
+                return Message.encodeTileString(applyStage(Message.decodeTileString(parts[1]), parts, 2));
+        }
+    }
+
+    /**
+     * Fused task "PIPELINE;<source tile>|OP;args|OP;args...". Each stage consumes the
+     * previous stage's tile in memory, so intermediates never leave this Worker.
+     */
+    static String runPipeline(String body) {
+        String[] stages = body.split("\\|");
+        byte[] source = Base64.getDecoder().decode(stages[0].substring("PIPELINE;".length()));
+        int[][] tile;
+        int next = 1;
+        if (stages.length > 1 && stages[1].startsWith("MATMUL_TILE;")) {
+            // Let a sparse source take the sparse kernel for the first product
+            tile = multiplyToDense(source, Base64.getDecoder().decode(stages[1].substring("MATMUL_TILE;".length())));
+            next = 2;
+        } else {
+            tile = Message.decodeTile(source);
+        }
+        for (int s = next; s < stages.length; s++) {
+            String[] parts = stages[s].split(";");
+            tile = applyStage(tile, parts, 1);
+        }
+        if (stages[stages.length - 1].startsWith("TOTAL_SUM_TILE")) {
+            tile = new int[][] { { total(tile[0]) } };
+        }
+        return Message.encodeTileString(tile);
+    }
+
+    private static boolean isStage(String op) {
+        switch (op) {
+            case "MATMUL_TILE":
+            case "TRANSPOSE_TILE":
+            case "ADD_TILE":
+            case "SCALE_TILE":
+            case "COLSCALE_TILE":
+            case "ROW_SUM_TILE":
+            case "COL_SUM_TILE":
+            case "TOTAL_SUM_TILE":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Applies stage op parts[0] to tile with arguments parts[from..]. TOTAL_SUM_TILE
+    // yields column sums here; callers fold those to a scalar at the end.
+    static int[][] applyStage(int[][] tile, String[] parts, int from) {
+        switch (parts[0]) {
+            case "MATMUL_TILE":
+                byte[] b = Base64.getDecoder().decode(parts[from]);
+                return Message.isSparseTile(b) ? multiply(tile, Message.decodeSparseTile(b))
+                        : multiply(tile, Message.decodeTile(b));
+            case "TRANSPOSE_TILE":
+                return transpose(tile);
+            case "ADD_TILE":
+                return add(tile, Message.decodeTileString(parts[from]));
+            case "SCALE_TILE":
+                return scale(tile, Integer.parseInt(parts[from]));
+            case "COLSCALE_TILE":
+                return scaleColumns(tile);
+            case "ROW_SUM_TILE":
+                return rowSums(tile);
+            case "COL_SUM_TILE":
+            case "TOTAL_SUM_TILE":
+                return colSums(tile);
+            default:
+                throw new IllegalArgumentException("Unknown stage: " + parts[0]);
+        }
+    }
+
+    // Product of two encoded operands as a dense tile; CSR operands take the sparse kernels
+    static int[][] multiplyToDense(byte[] aData, byte[] bData) {
+        boolean sparseA = Message.isSparseTile(aData);
+        boolean sparseB = Message.isSparseTile(bData);
+        if (sparseA && sparseB) {
+            return multiply(Message.decodeSparseTile(aData), Message.decodeSparseTile(bData)).toDense();
+        }
+        if (sparseA) return multiply(Message.decodeSparseTile(aData), Message.decodeTile(bData));
+        if (sparseB) return multiply(Message.decodeTile(aData), Message.decodeSparseTile(bData));
+        return multiply(Message.decodeTile(aData), Message.decodeTile(bData));
+    }
+
+    // Dense tile product on the scalar or SIMD kernel
+    static int[][] multiply(int[][] a, int[][] b) {
+        int m = b.length > 0 ? b[0].length : 0;
+        int[][] c = new int[a.length][m];
+        Kernels.INSTANCE.multiplyAccumulate(a, b, c);
+        return c;
+    }
+
+    /**
+     * A x B accumulated in long and, for mod(m), reduced into [0, m). Modular operands
+     * are reduced first so every product is below m^2, and the sums are reduced after
+     * as many k as a long can absorb, which for m below 2^31 is at least one.
+     */
+    static long[][] multiplyWide(int[][] a, int[][] b, ResultType type) {
+        int inner = b.length;
+        long[][] c = new long[a.length][inner > 0 ? b[0].length : 0];
+        if (!type.isModular()) {
+            Kernels.INSTANCE.multiplyAccumulate(a, b, c, 0, inner);
+            return c;
+        }
+        long mod = type.modulus;
+        int[][] ra = reduce(a, mod);
+        int[][] rb = reduce(b, mod);
+        long step = Math.max(1, (Long.MAX_VALUE - mod) / ((mod - 1) * (mod - 1)));
+        for (int k0 = 0; k0 < inner; k0 += (int) Math.min(step, inner)) {
+            Kernels.INSTANCE.multiplyAccumulate(ra, rb, c, k0, (int) Math.min(inner, k0 + step));
+            for (long[] row : c) {
+                for (int j = 0; j < row.length; j++) row[j] %= mod;
+            }
+        }
+        return c;
+    }
+
+    private static int[][] reduce(int[][] a, long mod) {
+        int[][] r = new int[a.length][];
+        for (int i = 0; i < a.length; i++) {
+            r[i] = new int[a[i].length];
+            for (int j = 0; j < r[i].length; j++) r[i][j] = (int) Math.floorMod(a[i][j], mod);
+        }
+        return r;
+    }
+
+    // Values known to fit in an int, e.g. residues mod m
+    static int[][] narrow(long[][] a) {
+        int[][] r = new int[a.length][];
+        for (int i = 0; i < a.length; i++) {
+            r[i] = new int[a[i].length];
+            for (int j = 0; j < r[i].length; j++) r[i][j] = (int) a[i][j];
+        }
+        return r;
+    }
+
+    static int[][] transpose(int[][] a) {
+        int cols = a.length > 0 ? a[0].length : 0;
+        int[][] t = new int[cols][a.length];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < cols; j++) {
+                t[j][i] = a[i][j];
+            }
+        }
+        return t;
+    }
+
+    // Element-wise a + b; a is reused as the output
+    static int[][] add(int[][] a, int[][] b) {
+        for (int i = 0; i < a.length; i++) {
+            int[] ai = a[i], bi = b[i];
+            for (int j = 0; j < ai.length; j++) {
+                ai[j] += bi[j];
+            }
+        }
+        return a;
+    }
+
+    static int[][] scale(int[][] a, int k) {
+        for (int[] row : a) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] *= k;
+            }
+        }
+        return a;
+    }
+
+    // Column j times (j + 1), i.e. a x diag(1..n) without building the diagonal
+    static int[][] scaleColumns(int[][] a) {
+        for (int[] row : a) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] *= j + 1;
+            }
+        }
+        return a;
+    }
+
+    static int[][] rowSums(int[][] a) {
+        int[][] sums = new int[a.length][1];
+        for (int i = 0; i < a.length; i++) {
+            int s = 0;
+            for (int v : a[i]) s += v;
+            sums[i][0] = s;
+        }
+        return sums;
+    }
+
+    static int[][] colSums(int[][] a) {
+        int[][] sums = new int[1][a.length > 0 ? a[0].length : 0];
+        for (int[] row : a) {
+            for (int j = 0; j < row.length; j++) {
+                sums[0][j] += row[j];
+            }
+        }
+        return sums;
+    }
+
+    private static int total(int[] v) {
+        int s = 0;
+        for (int x : v) s += x;
+        return s;
+    }
+
+    // Sparse x dense: each non-zero a[i][k] scales row k of b into row i of c
+    static int[][] multiply(SparseMatrix a, int[][] b) {
+        int m = b.length > 0 ? b[0].length : 0;
+        int[][] c = new int[a.rows][m];
+        for (int i = 0; i < a.rows; i++) {
+            int[] ci = c[i];
+            for (int p = a.rowPtr[i]; p < a.rowPtr[i + 1]; p++) {
+                Kernels.INSTANCE.axpy(ci, a.values[p], b[a.colIdx[p]], m);
+            }
+        }
+        return c;
+    }
+
+    // Dense x sparse: each non-zero a[i][k] scatters the non-zeros of row k of b
+    static int[][] multiply(int[][] a, SparseMatrix b) {
+        int[][] c = new int[a.length][b.cols];
+        for (int i = 0; i < a.length; i++) {
+            int[] ci = c[i];
+            for (int k = 0; k < b.rows; k++) {
+                int aik = a[i][k];
+                if (aik == 0) continue;
+                for (int p = b.rowPtr[k]; p < b.rowPtr[k + 1]; p++) {
+                    ci[b.colIdx[p]] += aik * b.values[p];
+                }
+            }
+        }
+        return c;
+    }
+
+    // Sparse x sparse (Gustavson): a dense accumulator per output row, with a marker
+    // array so only touched columns are gathered and reset
+    static SparseMatrix multiply(SparseMatrix a, SparseMatrix b) {
+        int[] acc = new int[b.cols];
+        int[] marker = new int[b.cols];
+        Arrays.fill(marker, -1);
+        int[] touched = new int[b.cols];
+
+        int[] rowPtr = new int[a.rows + 1];
+        int[] colIdx = new int[Math.max(16, a.nnz() + b.nnz())];
+        int[] values = new int[colIdx.length];
+        int nnz = 0;
+
+        for (int i = 0; i < a.rows; i++) {
+            int count = 0;
+            for (int p = a.rowPtr[i]; p < a.rowPtr[i + 1]; p++) {
+                int k = a.colIdx[p];
+                int v = a.values[p];
+                for (int q = b.rowPtr[k]; q < b.rowPtr[k + 1]; q++) {
+                    int j = b.colIdx[q];
+                    if (marker[j] != i) {
+                        marker[j] = i;
+                        acc[j] = 0;
+                        touched[count++] = j;
+                    }
+                    acc[j] += v * b.values[q];
+                }
+            }
+            Arrays.sort(touched, 0, count);
+            if (nnz + count > colIdx.length) {
+                int cap = Math.max(colIdx.length * 2, nnz + count);
+                colIdx = Arrays.copyOf(colIdx, cap);
+                values = Arrays.copyOf(values, cap);
+            }
+            for (int t = 0; t < count; t++) {
+                int j = touched[t];
+                if (acc[j] != 0) {
+                    colIdx[nnz] = j;
+                    values[nnz++] = acc[j];
+                }
+            }
+            rowPtr[i + 1] = nnz;
         }
+        return new SparseMatrix(a.rows, b.cols, rowPtr,
+                Arrays.copyOf(colIdx, nnz), Arrays.copyOf(values, nnz));
     }
 
     public void joinCluster(String host, int port) {
@@ -0,0 +1,153 @@
+package pdc;
+
+/**
+ * Streaming xxHash64 (seed 0 unless given). Values are fed as little-endian bytes,
+ * so hashing ints or longs one at a time matches hashing their byte encoding.
+ */
+public class XxHash64 {
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private final long seed;
+    private long v1, v2, v3, v4;
+    private final byte[] buf = new byte[32];
+    private int bufLen = 0;
+    private long total = 0;
+
+    public XxHash64() {
+        this(0);
+    }
+
+    public XxHash64(long seed) {
+        this.seed = seed;
+        v1 = seed + P1 + P2;
+        v2 = seed + P2;
+        v3 = seed;
+        v4 = seed - P1;
+    }
+
+    public XxHash64 update(byte b) {
+        buf[bufLen++] = b;
+        total++;
+        if (bufLen == 32) {
+            stripe();
+        }
+        return this;
+    }
+
+    public XxHash64 update(byte[] data, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            update(data[i]);
+        }
+        return this;
+    }
+
+    public XxHash64 update(int v) {
+        if (bufLen <= 28) {
+            buf[bufLen] = (byte) v;
+            buf[bufLen + 1] = (byte) (v >>> 8);
+            buf[bufLen + 2] = (byte) (v >>> 16);
+            buf[bufLen + 3] = (byte) (v >>> 24);
+            bufLen += 4;
+            total += 4;
+            if (bufLen == 32) stripe();
+            return this;
+        }
+        for (int i = 0; i < 4; i++) {
+            update((byte) (v >>> (8 * i)));
+        }
+        return this;
+    }
+
+    public XxHash64 update(long v) {
+        update((int) v);
+        return update((int) (v >>> 32));
+    }
+
+    // Hashes the low byte of each char; exact for ASCII text such as Base64 tiles
+    public XxHash64 update(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            update((byte) s.charAt(i));
+        }
+        return this;
+    }
+
+    public long digest() {
+        long h;
+        if (total >= 32) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        } else {
+            h = seed + P5;
+        }
+        h += total;
+
+        int i = 0;
+        for (; i + 8 <= bufLen; i += 8) {
+            h ^= round(0, readLong(i));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        if (i + 4 <= bufLen) {
+            h ^= (readInt(i) & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            i += 4;
+        }
+        for (; i < bufLen; i++) {
+            h ^= (buf[i] & 0xFFL) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    /**
+     * Hashes rows [from, to) of a matrix together with their shape.
+     */
+    public static long hashRows(int[][] m, int from, int to) {
+        XxHash64 h = new XxHash64();
+        h.update(to - from).update(to > from ? m[from].length : 0);
+        for (int i = from; i < to; i++) {
+            for (int v : m[i]) h.update(v);
+        }
+        return h.digest();
+    }
+
+    private void stripe() {
+        v1 = round(v1, readLong(0));
+        v2 = round(v2, readLong(8));
+        v3 = round(v3, readLong(16));
+        v4 = round(v4, readLong(24));
+        bufLen = 0;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long merge(long h, long v) {
+        h ^= round(0, v);
+        return h * P1 + P4;
+    }
+
+    private long readLong(int i) {
+        return (readInt(i) & 0xFFFFFFFFL) | ((long) readInt(i + 4) << 32);
+    }
+
+    private int readInt(int i) {
+        return (buf[i] & 0xFF) | (buf[i + 1] & 0xFF) << 8 | (buf[i + 2] & 0xFF) << 16 | (buf[i + 3] & 0xFF) << 24;
+    }
+}
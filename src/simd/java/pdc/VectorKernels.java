@@ -0,0 +1,123 @@
+package pdc;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API versions of the Kernels loops. The species is the platform's
+ * preferred shape, picked when the JVM starts (e.g. 16 ints with AVX-512, 8 with
+ * AVX2, 4 with NEON); tails shorter than one vector run the scalar loop. Integer
+ * lanes wrap exactly like int arithmetic, so results match the scalar kernels bit
+ * for bit. Wide (long) accumulation widens half-width int vectors into the
+ * preferred long shape. Loaded reflectively by Kernels.load().
+ */
+final class VectorKernels extends Kernels {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> WIDE = LongVector.SPECIES_PREFERRED;
+    // Ints that widen into exactly one WIDE vector
+    private static final VectorSpecies<Integer> HALF =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(WIDE.vectorBitSize() / 2));
+
+    @Override
+    void multiplyAccumulate(int[][] a, int[][] b, int[][] c) {
+        int inner = b.length;
+        int m = inner > 0 ? b[0].length : 0;
+        if (m < SPECIES.length()) {
+            if (inner >= SPECIES.length()) multiplyNarrow(a, b, c);
+            else super.multiplyAccumulate(a, b, c);
+            return;
+        }
+        int bound = SPECIES.loopBound(m);
+        for (int i = 0; i < a.length; i++) {
+            int[] ai = a[i];
+            int[] ci = c[i];
+            int k = 0;
+            // Four rows of b per pass so each strip of c is loaded and stored once per four k
+            for (; k + 3 < inner; k += 4) {
+                int a0 = ai[k], a1 = ai[k + 1], a2 = ai[k + 2], a3 = ai[k + 3];
+                if ((a0 | a1 | a2 | a3) == 0) continue;
+                int[] b0 = b[k], b1 = b[k + 1], b2 = b[k + 2], b3 = b[k + 3];
+                int j = 0;
+                for (; j < bound; j += SPECIES.length()) {
+                    IntVector.fromArray(SPECIES, ci, j)
+                            .add(IntVector.fromArray(SPECIES, b0, j).mul(a0))
+                            .add(IntVector.fromArray(SPECIES, b1, j).mul(a1))
+                            .add(IntVector.fromArray(SPECIES, b2, j).mul(a2))
+                            .add(IntVector.fromArray(SPECIES, b3, j).mul(a3))
+                            .intoArray(ci, j);
+                }
+                for (; j < m; j++) {
+                    ci[j] += a0 * b0[j] + a1 * b1[j] + a2 * b2[j] + a3 * b3[j];
+                }
+            }
+            for (; k < inner; k++) {
+                if (ai[k] != 0) axpy(ci, ai[k], b[k], m);
+            }
+        }
+    }
+
+    @Override
+    void multiplyAccumulate(int[][] a, int[][] b, long[][] c, int k0, int k1) {
+        int m = b.length > 0 ? b[0].length : 0;
+        int bound = WIDE.loopBound(m);
+        for (int i = 0; i < a.length; i++) {
+            int[] ai = a[i];
+            long[] ci = c[i];
+            for (int k = k0; k < k1; k++) {
+                long aik = ai[k];
+                if (aik == 0) continue;
+                int[] bk = b[k];
+                int j = 0;
+                for (; j < bound; j += WIDE.length()) {
+                    LongVector bj = (LongVector) IntVector.fromArray(HALF, bk, j)
+                            .convertShape(VectorOperators.I2L, WIDE, 0);
+                    LongVector.fromArray(WIDE, ci, j).add(bj.mul(aik)).intoArray(ci, j);
+                }
+                for (; j < m; j++) {
+                    ci[j] += aik * bk[j];
+                }
+            }
+        }
+    }
+
+    @Override
+    void axpy(int[] c, int s, int[] b, int n) {
+        int j = 0;
+        for (int bound = SPECIES.loopBound(n); j < bound; j += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, c, j)
+                    .add(IntVector.fromArray(SPECIES, b, j).mul(s))
+                    .intoArray(c, j);
+        }
+        for (; j < n; j++) {
+            c[j] += s * b[j];
+        }
+    }
+
+    @Override
+    int dot(int[] a, int[] b, int n) {
+        IntVector acc = IntVector.zero(SPECIES);
+        int j = 0;
+        for (int bound = SPECIES.loopBound(n); j < bound; j += SPECIES.length()) {
+            acc = acc.add(IntVector.fromArray(SPECIES, a, j).mul(IntVector.fromArray(SPECIES, b, j)));
+        }
+        int s = acc.reduceLanes(VectorOperators.ADD);
+        for (; j < n; j++) {
+            s += a[j] * b[j];
+        }
+        return s;
+    }
+
+    @Override
+    int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    String name() {
+        return "vector " + SPECIES.vectorBitSize() + "-bit";
+    }
+}
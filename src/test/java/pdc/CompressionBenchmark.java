@@ -0,0 +1,139 @@
+package pdc;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loopback throughput benchmark for payload compression.
+ * Streams tile messages through a bandwidth-capped socket with and without
+ * Message.compressPayload and reports logical payload throughput.
+ *
+ * Usage: CompressionBenchmark [capMBps=20] [messages=40] [tileSize=256]
+ */
+public class CompressionBenchmark {
+
+    // Token-bucket style cap on the bytes written per second
+    static class ThrottledOutputStream extends FilterOutputStream {
+        private final long bytesPerSecond;
+        private final long start = System.nanoTime();
+        private long written = 0;
+
+        ThrottledOutputStream(OutputStream out, long bytesPerSecond) {
+            super(out);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            throttle(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            throttle(len);
+            out.write(b, off, len);
+        }
+
+        private void throttle(int len) throws IOException {
+            written += len;
+            long dueNanos = written * 1_000_000_000L / bytesPerSecond;
+            long sleepNanos = dueNanos - (System.nanoTime() - start);
+            if (sleepNanos > 0) {
+                try {
+                    Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        long capBytes = (long) (args.length > 0 ? Double.parseDouble(args[0]) : 20) * 1024 * 1024;
+        int messages = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+
+        System.out.printf("Cap %.1f MB/s, %d messages of %dx%d tiles%n", capBytes / 1048576.0, messages, size, size);
+        System.out.printf("%-10s %-6s %12s %12s %10s%n", "tile", "mode", "wire bytes", "payload MB/s", "msgs/s");
+
+        String[] names = { "identity", "filled", "random" };
+        int[][][] tiles = {
+            MatrixGenerator.generateIdentityMatrix(size),
+            MatrixGenerator.generateFilledMatrix(size, size, 7),
+            MatrixGenerator.generateRandomMatrix(size, size, 1000)
+        };
+        for (int t = 0; t < tiles.length; t++) {
+            String payload = Message.encodeTileString(tiles[t]);
+            run(names[t], payload, false, messages, capBytes);
+            run(names[t], payload, true, messages, capBytes);
+        }
+    }
+
+    private static void run(String name, String payload, boolean compress, int messages, long capBytes)
+            throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread receiver = new Thread(() -> {
+                try (Socket s = server.accept();
+                     BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                     PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true)) {
+                    for (int i = 0; i < messages; i++) {
+                        Message msg = Message.parse(in.readLine());
+                        if (!payload.equals(msg.payloadStr)) throw new IllegalStateException("Payload mismatch");
+                    }
+                    out.println("done");
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+            receiver.start();
+
+            try (Socket s = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort())) {
+                CountingOutputStream counter = new CountingOutputStream(s.getOutputStream());
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                        new BufferedOutputStream(new ThrottledOutputStream(counter, capBytes), 65536), StandardCharsets.UTF_8));
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+
+                long start = System.nanoTime();
+                for (int i = 0; i < messages; i++) {
+                    Message msg = new Message();
+                    msg.messageType = "RPC_REQUEST";
+                    msg.studentId = "bench";
+                    msg.payloadStr = payload;
+                    if (compress) msg.compressPayload(Message.COMPRESSION_THRESHOLD);
+                    out.println(msg.toJson());
+                }
+                out.flush();
+                in.readLine();
+                double secs = (System.nanoTime() - start) / 1e9;
+
+                double mb = (double) payload.length() * messages / 1048576.0;
+                System.out.printf("%-10s %-6s %12d %12.2f %10.1f%n", name, compress ? "deflate" : "plain",
+                        counter.count, mb / secs, messages / secs);
+            }
+            receiver.join();
+        }
+    }
+
+    static class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            count++;
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            count += len;
+            out.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JUnit 5 tests for fair-share dispatch order across tenants and jobs.
+ */
+class FairSchedulerTest {
+
+    private static Master.Task task(int id, String tenant, int job) {
+        Master.Task t = new Master.Task(id, "OP;x");
+        t.tenant = tenant;
+        t.jobId = job;
+        return t;
+    }
+
+    @Test
+    void testSmallTenant_NotStarvedByBacklog() throws Exception {
+        FairScheduler q = new FairScheduler();
+        for (int i = 0; i < 100; i++) q.offer(task(i, "big", 0));
+        q.offer(task(100, "small", 1));
+
+        int position = 0;
+        Master.Task t;
+        do {
+            t = q.poll(10, TimeUnit.MILLISECONDS);
+            position++;
+        } while (!"small".equals(t.tenant));
+        assertTrue(position < 100, "small tenant served at position " + position);
+    }
+
+    @Test
+    void testJobsWithinTenant_RoundRobin() throws Exception {
+        FairScheduler q = new FairScheduler();
+        q.offer(task(0, "t", 1));
+        q.offer(task(1, "t", 1));
+        q.offer(task(2, "t", 2));
+
+        assertEquals(1, q.poll(10, TimeUnit.MILLISECONDS).jobId);
+        assertEquals(2, q.poll(10, TimeUnit.MILLISECONDS).jobId);
+        assertEquals(1, q.poll(10, TimeUnit.MILLISECONDS).jobId);
+    }
+
+    @Test
+    void testInFlightLimit_HoldsUntilRelease() throws Exception {
+        FairScheduler q = new FairScheduler();
+        q.configure("t", 1, 1);
+        q.offer(task(0, "t", 0));
+        q.offer(task(1, "t", 0));
+
+        Master.Task first = q.poll(10, TimeUnit.MILLISECONDS);
+        assertNotNull(first);
+        assertNull(q.poll(20, TimeUnit.MILLISECONDS));
+        q.release(first);
+        assertEquals(1, q.poll(10, TimeUnit.MILLISECONDS).taskId);
+        assertEquals(0, q.size());
+    }
+
+    @Test
+    void testHigherPriority_ServedFirst_EarliestDeadlineWithin() throws Exception {
+        FairScheduler q = new FairScheduler();
+        long now = System.currentTimeMillis();
+        q.offer(task(0, "a", 1));
+        Master.Task late = task(1, "b", 2);
+        late.priority = 5;
+        late.deadline = now + 60_000;
+        Master.Task soon = task(2, "b", 3);
+        soon.priority = 5;
+        soon.deadline = now + 10_000;
+        q.offer(late);
+        q.offer(soon);
+
+        assertEquals(2, q.poll(10, TimeUnit.MILLISECONDS).taskId);
+        assertEquals(1, q.poll(10, TimeUnit.MILLISECONDS).taskId);
+        assertEquals(0, q.poll(10, TimeUnit.MILLISECONDS).taskId);
+    }
+
+    @Test
+    void testExpiredTask_FailedInsteadOfDispatched() throws Exception {
+        FairScheduler q = new FairScheduler();
+        Master.Task expired = task(0, "t", 0);
+        expired.deadline = System.currentTimeMillis() - 1;
+        q.offer(expired);
+
+        assertNull(q.poll(10, TimeUnit.MILLISECONDS));
+        assertTrue(expired.result.isCompletedExceptionally());
+        assertFalse(expired.holdsSlot);
+    }
+
+    @Test
+    void testPut_BlocksWhileFull() throws Exception {
+        FairScheduler q = new FairScheduler(1);
+        q.put(task(0, "t", 0));
+        Thread producer = new Thread(() -> {
+            try {
+                q.put(task(1, "t", 0));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        producer.join(100);
+        assertTrue(producer.isAlive());
+        assertEquals(1, q.size());
+
+        assertEquals(0, q.poll(10, TimeUnit.MILLISECONDS).taskId);
+        producer.join(1000);
+        assertFalse(producer.isAlive());
+        assertEquals(1, q.size());
+    }
+}
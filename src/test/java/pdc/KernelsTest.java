@@ -0,0 +1,65 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+/**
+ * JUnit 5 tests for the dense kernels. Kernels.INSTANCE is the Vector API version
+ * when the simd classes and jdk.incubator.vector are present, so these compare it
+ * against the scalar loops on shapes with vector tails and narrow outputs.
+ */
+class KernelsTest {
+
+    private static int[][] random(Random rnd, int rows, int cols) {
+        int[][] m = new int[rows][cols];
+        for (int[] row : m) {
+            for (int j = 0; j < cols; j++) row[j] = rnd.nextInt(2001) - 1000;
+        }
+        return m;
+    }
+
+    @Test
+    void testMultiplyAccumulate_MatchesScalar() {
+        Random rnd = new Random(42);
+        Kernels scalar = new Kernels();
+        int[][] shapes = { {1, 1, 1}, {7, 13, 37}, {33, 67, 3}, {64, 64, 64}, {5, 2, 100} };
+        for (int[] s : shapes) {
+            int[][] a = random(rnd, s[0], s[1]);
+            int[][] b = random(rnd, s[1], s[2]);
+            int[][] expected = random(rnd, s[0], s[2]);
+            int[][] actual = new int[s[0]][];
+            for (int i = 0; i < s[0]; i++) actual[i] = expected[i].clone();
+
+            scalar.multiplyAccumulate(a, b, expected);
+            Kernels.INSTANCE.multiplyAccumulate(a, b, actual);
+            assertArrayEquals(expected, actual, Kernels.INSTANCE.name() + " " + s[0] + "x" + s[1] + "x" + s[2]);
+        }
+    }
+
+    @Test
+    void testWideAccumulate_MatchesScalarWithoutWrapping() {
+        Random rnd = new Random(7);
+        int[][] a = random(rnd, 9, 70);
+        int[][] b = random(rnd, 70, 23);
+        a[0][0] = Integer.MAX_VALUE;
+        b[0][0] = Integer.MAX_VALUE;
+        long[][] expected = new long[9][23];
+        long[][] actual = new long[9][23];
+        new Kernels().multiplyAccumulate(a, b, expected, 0, 70);
+        Kernels.INSTANCE.multiplyAccumulate(a, b, actual, 0, 70);
+        assertArrayEquals(expected, actual);
+        assertTrue(expected[0][0] > Integer.MAX_VALUE);
+    }
+
+    @Test
+    void testDot_WrapsLikeIntArithmetic() {
+        int[] a = new int[45];
+        int[] b = new int[45];
+        java.util.Arrays.fill(a, Integer.MAX_VALUE);
+        java.util.Arrays.fill(b, 3);
+        assertEquals(new Kernels().dot(a, b, 45), Kernels.INSTANCE.dot(a, b, 45));
+        assertEquals(45 * Integer.MAX_VALUE * 3, Kernels.INSTANCE.dot(a, b, 45));
+    }
+}
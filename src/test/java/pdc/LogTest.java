@@ -0,0 +1,48 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * JUnit 5 tests for the asynchronous logger.
+ */
+class LogTest {
+
+    @Test
+    void testFormat_FillsPlaceholdersInOrder() {
+        StringBuilder sb = new StringBuilder();
+        Log.format(sb, "op={} workers={} extra {}", "MATMUL", 4, null);
+        assertEquals("op=MATMUL workers=4 extra null", sb.toString());
+
+        sb.setLength(0);
+        Log.format(sb, "no args {}", null, null, null);
+        assertEquals("no args null", sb.toString());
+    }
+
+    @Test
+    void testLevels_GatePerComponentAndWriteAsync() {
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        PrintStream original = System.out;
+        Log.flush(1000);
+        System.setOut(new PrintStream(captured, true));
+        try {
+            Log.setLevel("LogTestQuiet", Log.WARN);
+            Log.setLevel("LogTestLoud", Log.DEBUG);
+            Log quiet = Log.get("LogTestQuiet");
+            Log loud = Log.get("LogTestLoud", "Loud 1");
+            assertFalse(quiet.isEnabled(Log.INFO));
+
+            quiet.info("hidden {}", 1);
+            loud.debug("shown {} of {}", 1, 2);
+            Log.flush(1000);
+        } finally {
+            System.setOut(original);
+        }
+        String out = captured.toString();
+        assertFalse(out.contains("hidden"));
+        assertTrue(out.contains("[Loud 1] shown 1 of 2"));
+    }
+}
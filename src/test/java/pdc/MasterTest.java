@@ -27,6 +27,255 @@ class MasterTest {
         assertNull(result, "Initial stub should return null");
     }
 
+    @Test
+    void testCoordinate_MatmulDenseAndSparse() {
+        int[][] a = MatrixGenerator.generateRandomMatrix(9, 6, 10);
+        int[][] b = MatrixGenerator.generateRandomMatrix(6, 5, 10);
+        assertArrayEquals(Worker.multiply(a, b), (int[][]) master.coordinate("MATMUL", a, b, 3));
+
+        int[][] identity = MatrixGenerator.generateIdentityMatrix(20);
+        assertArrayEquals(identity, (int[][]) master.coordinate("MATMUL", identity, identity, 2));
+    }
+
+    @Test
+    void testCoordinate_ElementwiseAndReductions() {
+        int[][] a = MatrixGenerator.generateRandomMatrix(11, 7, 10);
+        int[][] b = MatrixGenerator.generateRandomMatrix(11, 7, 10);
+        int[][] sum = new int[11][7], scaled = new int[11][7], transposed = new int[7][11];
+        int[][] rowSums = new int[11][1], colSums = new int[1][7];
+        int total = 0;
+        for (int i = 0; i < 11; i++) {
+            for (int j = 0; j < 7; j++) {
+                sum[i][j] = a[i][j] + b[i][j];
+                scaled[i][j] = a[i][j] * 3;
+                transposed[j][i] = a[i][j];
+                rowSums[i][0] += a[i][j];
+                colSums[0][j] += a[i][j];
+                total += a[i][j];
+            }
+        }
+
+        assertArrayEquals(sum, (int[][]) master.coordinate("ADD", a, b, 3));
+        assertArrayEquals(scaled, (int[][]) master.coordinate("SCALE", a, 3, 3));
+        assertArrayEquals(transposed, (int[][]) master.coordinate("TRANSPOSE", a, 3));
+        assertArrayEquals(rowSums, (int[][]) master.coordinate("ROW_SUM", a, 3));
+        assertArrayEquals(colSums, (int[][]) master.coordinate("COL_SUM", a, 4));
+        assertArrayEquals(new int[][] { { total } }, (int[][]) master.coordinate("TOTAL_SUM", a, 5));
+    }
+
+    @Test
+    void testCoordinate_SingleOperandMatmulOnWideInput() {
+        // Multiplying by diag(1..n) as a dense operand would need n * n ints here
+        int[][] wide = MatrixGenerator.generateRandomMatrix(2, 100_000, 10);
+        int[][] expected = new int[2][100_000];
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j < 100_000; j++) expected[i][j] = wide[i][j] * (j + 1);
+        }
+        assertArrayEquals(expected, (int[][]) master.coordinate("MATMUL", wide, 2));
+    }
+
+    @Test
+    void testEvaluate_FusedExpressions() {
+        int[][] a = MatrixGenerator.generateRandomMatrix(10, 6, 10);
+        int[][] b = MatrixGenerator.generateRandomMatrix(6, 8, 10);
+        int[][] c = MatrixGenerator.generateRandomMatrix(10, 8, 10);
+        int[][] ab = Worker.multiply(a, b);
+        int[][] abc = Worker.add(Worker.multiply(a, b), c);
+
+        Expr product = Expr.of(a).matmul(Expr.of(b));
+        assertArrayEquals(abc, master.evaluate(product.add(Expr.of(c)), 3));
+        assertArrayEquals(Worker.rowSums(ab), master.evaluate(product.rowSum(), 3));
+        assertArrayEquals(Worker.colSums(abc), master.evaluate(Expr.of(c).add(product).colSum(), 4));
+
+        // Shared intermediate and a transpose barrier
+        Expr shared = product.scale(2);
+        int[][] doubled = Worker.scale(Worker.multiply(a, b), 2);
+        int[][] expected = Worker.add(Worker.multiply(Worker.transpose(doubled), doubled), Worker.multiply(Worker.transpose(doubled), doubled));
+        Expr gram = shared.transpose().matmul(shared);
+        assertArrayEquals(expected, master.evaluate(gram.add(gram), 2));
+    }
+
+    @Test
+    void testPlacement_PrefersResidentOperands() {
+        Master.Client local = new Master.Client(1, null);
+        Master.Client idle = new Master.Client(2, null);
+        local.residentTiles.add("j0:B:0:0");
+        Master.Task t = new Master.Task(7, "MATMUL_TILE;x;@j0:B:0:0");
+        t.refs = java.util.Collections.singletonMap("j0:B:0:0", "x".repeat(100_000));
+        java.util.List<Master.Client> workers = java.util.Arrays.asList(local, idle);
+
+        assertSame(local, Master.choosePlacement(workers, t, 1000));
+
+        // Busy local worker: wait inside the window, then fall back to the idle one
+        local.inFlight.set(50);
+        assertNull(Master.choosePlacement(workers, t, 1000 + Master.LOCALITY_WAIT_MS / 2));
+        assertSame(idle, Master.choosePlacement(workers, t, 1000 + Master.LOCALITY_WAIT_MS));
+    }
+
+    @Test
+    void testPlacement_RespectsWorkerCredits() {
+        Master.Client full = new Master.Client(1, null);
+        Master.Client open = new Master.Client(2, null);
+        full.creditTasks = 2;
+        full.inFlight.set(2);
+        open.avgTaskMs = 1000;             // slower, but the only one with credit
+        open.creditBytes = 100;
+        Master.Task t = new Master.Task(7, "SCALE_TILE;x;2");
+        java.util.List<Master.Client> workers = java.util.Arrays.asList(full, open);
+
+        assertSame(open, Master.choosePlacement(workers, t, 1000));
+
+        // A second task would overrun open's byte window
+        open.inFlight.set(1);
+        open.inFlightBytes.set(90);
+        assertNull(Master.choosePlacement(workers, t, 1000));
+    }
+
+    @Test
+    void testPlacement_WeightsByWorkerCores() {
+        Master.Client big = new Master.Client(1, null);
+        Master.Client small = new Master.Client(2, null);
+        big.cores = 32;
+        big.creditTasks = 64;
+        small.cores = 4;
+        small.creditTasks = 8;
+        java.util.List<Master.Client> workers = java.util.Arrays.asList(big, small);
+
+        // Fill both by repeated placement: the 32-core box takes about 8x the tasks
+        for (int i = 0; i < 36; i++) {
+            Master.Client w = Master.choosePlacement(workers, new Master.Task(i, "SCALE_TILE;x;2"), 1000);
+            w.inFlight.incrementAndGet();
+        }
+        assertEquals(32, big.inFlight.get());
+        assertEquals(4, small.inFlight.get());
+    }
+
+    @Test
+    void testPlacement_AvoidsWorkerThatReturnedBadResult() {
+        Master.Client bad = new Master.Client(1, null);
+        Master.Client other = new Master.Client(2, null);
+        other.avgTaskMs = 1000;
+        Master.Task t = new Master.Task(7, "SCALE_TILE;x;2");
+        t.avoid = java.util.Collections.singleton(1);
+
+        assertSame(other, Master.choosePlacement(java.util.Arrays.asList(bad, other), t, 1000));
+        // With nobody else left it still runs
+        assertSame(bad, Master.choosePlacement(java.util.Collections.singletonList(bad), t, 1000));
+    }
+
+    @Test
+    void testFreivalds_FindsWrongRows() {
+        java.util.Random rnd = new java.util.Random(42);
+        int[][] a = MatrixGenerator.generateRandomMatrix(30, 20, 1000);
+        int[][] b = MatrixGenerator.generateRandomMatrix(20, 25, 1000);
+        int[][] c = Worker.multiply(a, b);
+        assertTrue(Master.freivalds(a, b, c, ResultType.INT, 10, rnd).isEmpty());
+
+        c[17][3] += 1;
+        assertEquals(java.util.Collections.singleton(17), Master.freivalds(a, b, c, ResultType.INT, 10, rnd));
+
+        // Wide and modular results are checked in their own arithmetic
+        long[][] wide = (long[][]) master.coordinate("MATMUL", a, b, ResultType.LONG, 2);
+        assertTrue(Master.freivalds(a, b, wide, ResultType.LONG, 10, rnd).isEmpty());
+        wide[0][0] += 1L << 40;
+        assertEquals(java.util.Collections.singleton(0), Master.freivalds(a, b, wide, ResultType.LONG, 10, rnd));
+        ResultType mod = ResultType.mod(97);
+        int[][] residues = (int[][]) master.coordinate("MATMUL", a, b, mod, 2);
+        assertTrue(Master.freivalds(a, b, residues, mod, 10, rnd).isEmpty());
+        residues[29][24] = (residues[29][24] + 1) % 97;
+        assertEquals(java.util.Collections.singleton(29), Master.freivalds(a, b, residues, mod, 10, rnd));
+    }
+
+    @Test
+    void testLateResult_FromReassignedWorkerKeepsCredits() {
+        Master.Client slow = new Master.Client(1, null);
+        Master.Client other = new Master.Client(2, null);
+        Master.Task t = new Master.Task(7, "SCALE_TILE;x;2");
+        t.assignedClient = slow.id;
+        t.sentBytes = 10;
+        master.activeTasks.put(t.taskId, t);
+        slow.inFlight.set(1);
+        slow.inFlightBytes.set(10);
+
+        // Timed out and redispatched to the other Worker
+        master.reassignTasksOf(slow);
+        t.assignedClient = other.id;
+        master.activeTasks.put(t.taskId, t);
+        other.inFlight.set(1);
+        other.inFlightBytes.set(10);
+
+        Message late = new Message();
+        late.payloadStr = "7;" + Message.encodeTileString(new int[][] { { 2 } });
+        master.handleTaskResult(slow, late, true);
+        assertEquals(0, slow.inFlight.get());
+        assertEquals(0, slow.inFlightBytes.get());
+        assertEquals(1, other.inFlight.get());
+        assertFalse(t.result.isDone());
+
+        master.handleTaskResult(other, late, true);
+        assertEquals(0, other.inFlight.get());
+        assertEquals(0, other.inFlightBytes.get());
+        assertTrue(t.result.isDone());
+    }
+
+    @Test
+    void testMemoization_RepeatedProductServedFromCache() {
+        master.enableMemoization(1 << 20);
+        int[][] weights = MatrixGenerator.generateRandomMatrix(8, 8, 10);
+        int[][] input = MatrixGenerator.generateRandomMatrix(12, 8, 10);
+
+        int[][] first = (int[][]) master.coordinate("MATMUL", input, weights, 2);
+        assertTrue(master.memoStats().contains("hits=0"));
+        int[][] second = (int[][]) master.coordinate("MATMUL", input, weights, 2);
+        assertArrayEquals(first, second);
+        assertFalse(master.memoStats().contains("hits=0"));
+        assertArrayEquals(Worker.multiply(input, weights), second);
+    }
+
+    @Test
+    void testStrassen_MatchesClassicalProduct() {
+        master.enableStrassen(8);
+        for (int n : new int[] { 8, 16, 37 }) {
+            int[][] a = MatrixGenerator.generateRandomMatrix(n, n, 1000);
+            int[][] b = MatrixGenerator.generateRandomMatrix(n, n, 1000);
+            assertArrayEquals(Worker.multiply(a, b), (int[][]) master.coordinate("MATMUL", a, b, 2), "n=" + n);
+        }
+        // Non-square operands keep the row-block path
+        int[][] a = MatrixGenerator.generateRandomMatrix(20, 12, 10);
+        int[][] b = MatrixGenerator.generateRandomMatrix(12, 20, 10);
+        assertArrayEquals(Worker.multiply(a, b), (int[][]) master.coordinate("MATMUL", a, b, 2));
+    }
+
+    @Test
+    void testResultTypes_WideAndModularProducts() {
+        int n = 4;
+        int[][] a = new int[n][n];
+        int[][] b = new int[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                a[i][j] = 1_500_000_000 - i * 7 - j;
+                b[i][j] = -1_500_000_000 + i + j * 3;
+            }
+        }
+        long[][] wide = (long[][]) master.coordinate("MATMUL", a, b, ResultType.LONG, 2);
+        int[][] residues = (int[][]) master.coordinate("MATMUL", a, b, ResultType.mod(1_000_000_007), 2);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                java.math.BigInteger sum = java.math.BigInteger.ZERO;
+                for (int k = 0; k < n; k++) {
+                    sum = sum.add(java.math.BigInteger.valueOf((long) a[i][k] * b[k][j]));
+                }
+                assertEquals(sum.longValueExact(), wide[i][j]);
+                assertEquals(sum.mod(java.math.BigInteger.valueOf(1_000_000_007)).intValue(), residues[i][j]);
+            }
+        }
+        assertArrayEquals(Worker.multiply(a, b), (int[][]) master.coordinate("MATMUL", a, b, ResultType.INT, 2));
+
+        int[][] big = new int[4][4];
+        for (int[] row : big) java.util.Arrays.fill(row, Integer.MIN_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> master.coordinate("MATMUL", big, big, ResultType.LONG, 2));
+    }
+
     @Test
     void testListen_NoBlocking() {
         assertDoesNotThrow(() -> {
@@ -40,4 +289,44 @@ class MasterTest {
             master.reconcileState();
         }, "State reconciliation should be a callable system maintenance task");
     }
+
+    @Test
+    void testMessageCounters_UnknownTypesShareOneCounter() throws Exception {
+        int port;
+        try (java.net.ServerSocket probe = new java.net.ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        Master server = new Master(port);
+        server.start();
+        long before = Metrics.counter("master.messages_in.other").sum();
+        try (java.net.Socket s = new java.net.Socket("localhost", port)) {
+            java.io.PrintWriter out = new java.io.PrintWriter(
+                    new java.io.OutputStreamWriter(s.getOutputStream(), "UTF-8"), true);
+            java.io.BufferedReader in = new java.io.BufferedReader(
+                    new java.io.InputStreamReader(s.getInputStream(), "UTF-8"));
+            for (int i = 0; i < 20; i++) {
+                Message junk = new Message();
+                junk.messageType = "JUNK_" + i;
+                junk.studentId = "tester";
+                junk.payloadStr = "x";
+                out.println(junk.toJson());
+            }
+            // Answered after the lines before it, so the counters are up to date
+            Message ask = new Message();
+            ask.messageType = "METRICS";
+            ask.studentId = "tester";
+            ask.payloadStr = "";
+            out.println(ask.toJson());
+            Message reply;
+            do {
+                reply = Message.parse(in.readLine());
+            } while (!"METRICS".equals(reply.messageType));
+
+            assertEquals(before + 20, Metrics.counter("master.messages_in.other").sum());
+            assertFalse(Metrics.render().contains("master.messages_in.JUNK_"));
+            assertTrue(Metrics.render().contains("master.messages_in.METRICS"));
+        } finally {
+            server.shutdown();
+        }
+    }
 }
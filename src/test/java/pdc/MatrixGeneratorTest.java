@@ -0,0 +1,51 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * JUnit 5 tests for seeded generation in MatrixGenerator: every output form of the
+ * same seed (matrix, flat, buffer, tile, row blocks) holds the same values.
+ */
+class MatrixGeneratorTest {
+
+    @Test
+    void testSeeded_ReproducibleAndInRange() {
+        // Large enough to take the parallel path
+        int[][] m = MatrixGenerator.generateRandomMatrix(300, 400, 1000, 7);
+        assertArrayEquals(m, MatrixGenerator.generateRandomMatrix(300, 400, 1000, 7));
+        assertFalse(Arrays.deepEquals(m, MatrixGenerator.generateRandomMatrix(300, 400, 1000, 8)));
+        assertFalse(Arrays.equals(m[0], m[1]));
+        for (int[] row : m) {
+            for (int v : row) assertTrue(v >= 0 && v < 1000);
+        }
+    }
+
+    @Test
+    void testOutputForms_MatchMatrix() {
+        int rows = 37, cols = 23;
+        int[][] m = MatrixGenerator.generateRandomMatrix(rows, cols, 50, 42);
+
+        int[] flat = new int[rows * cols];
+        MatrixGenerator.fillRandom(flat, rows, cols, 50, 42);
+        IntBuffer direct = ByteBuffer.allocateDirect(rows * cols * 4).asIntBuffer();
+        MatrixGenerator.fillRandom(direct, rows, cols, 50, 42);
+        for (int i = 0; i < rows; i++) {
+            assertArrayEquals(m[i], Arrays.copyOfRange(flat, i * cols, (i + 1) * cols));
+            for (int j = 0; j < cols; j++) assertEquals(m[i][j], direct.get(i * cols + j));
+        }
+
+        int[][] tile = MatrixGenerator.randomTile(50, 42, 10, 20, 5, 17);
+        for (int i = 10; i < 20; i++) assertArrayEquals(Arrays.copyOfRange(m[i], 5, 17), tile[i - 10]);
+
+        List<int[][]> blocks = MatrixGenerator.randomRowBlocks(rows, cols, 50, 42, 8).collect(Collectors.toList());
+        assertEquals(5, blocks.size());
+        assertArrayEquals(m, blocks.stream().flatMap(Arrays::stream).toArray(int[][]::new));
+    }
+}
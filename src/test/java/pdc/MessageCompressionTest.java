@@ -0,0 +1,71 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit 5 tests for payload compression in Message.
+ * Covers the JSON and binary forms, the size threshold and payload checksums.
+ */
+class MessageCompressionTest {
+
+    private Message tileMessage(int[][] tile) {
+        Message msg = new Message();
+        msg.messageType = "RPC_REQUEST";
+        msg.studentId = "test";
+        msg.payloadStr = "task-1;MATMUL_TILE;" + Message.encodeTileString(tile);
+        return msg;
+    }
+
+    @Test
+    void testJson_RoundTrip() {
+        Message msg = tileMessage(MatrixGenerator.generateIdentityMatrix(128));
+        String original = msg.payloadStr;
+        assertTrue(msg.compressPayload(Message.COMPRESSION_THRESHOLD));
+        String json = msg.toJson();
+        assertTrue(json.length() < original.length());
+
+        Message parsed = Message.parse(json);
+        assertEquals(original, parsed.payloadStr);
+        assertEquals(0, parsed.flags);
+    }
+
+    @Test
+    void testBinary_RoundTrip() {
+        Message msg = tileMessage(MatrixGenerator.generateIdentityMatrix(128));
+        msg.payload = msg.payloadStr.getBytes();
+        byte[] original = msg.payload;
+        msg.payloadStr = null;
+        assertTrue(msg.compressPayload(Message.COMPRESSION_THRESHOLD));
+
+        Message unpacked = Message.unpack(msg.pack());
+        assertArrayEquals(original, unpacked.payload);
+    }
+
+    @Test
+    void testSmallPayload_NotCompressed() {
+        Message msg = tileMessage(new int[][] { { 1, 2 }, { 3, 4 } });
+        assertFalse(msg.compressPayload(Message.COMPRESSION_THRESHOLD));
+        assertEquals(0, msg.flags);
+        assertFalse(msg.toJson().contains("\"flags\""));
+    }
+
+    @Test
+    void testChecksum_SurvivesCompressionAndCatchesDamage() {
+        Message msg = tileMessage(MatrixGenerator.generateIdentityMatrix(128));
+        msg.sign();
+        assertTrue(msg.compressPayload(Message.COMPRESSION_THRESHOLD));
+
+        assertTrue(Message.parse(msg.toJson()).checksumValid());
+        assertTrue(Message.unpack(msg.pack()).checksumValid());
+
+        Message plain = tileMessage(MatrixGenerator.generateRandomMatrix(4, 4, 1000));
+        plain.sign();
+        Message damaged = Message.parse(plain.toJson());
+        damaged.payloadStr = damaged.payloadStr.substring(0, damaged.payloadStr.length() - 1) + "#";
+        assertFalse(damaged.checksumValid());
+
+        // Unsigned messages from older senders pass
+        assertTrue(Message.parse(tileMessage(new int[][] { { 1 } }).toJson()).checksumValid());
+    }
+}
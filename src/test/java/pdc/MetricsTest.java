@@ -0,0 +1,48 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit 5 tests for the metrics registry and its histograms.
+ */
+class MetricsTest {
+
+    @Test
+    void testHistogram_PercentilesWithinBucketPrecision() {
+        Metrics.Histogram h = new Metrics.Histogram();
+        for (int v = 1; v <= 10_000; v++) h.record(v);
+
+        assertEquals(10_000, h.count());
+        assertEquals(10_000, h.max());
+        assertEquals(5000.5, h.mean(), 1e-9);
+        long p50 = h.percentile(50);
+        long p99 = h.percentile(99);
+        assertTrue(p50 >= 5000 && p50 <= 5000 * 17 / 16, "p50=" + p50);
+        assertTrue(p99 >= 9900 && p99 <= 10_000, "p99=" + p99);
+    }
+
+    @Test
+    void testHistogram_BucketsCoverValuesInOrder() {
+        long[] samples = { 0, 1, 15, 16, 17, 31, 32, 33, 1000, 123_456_789, Long.MAX_VALUE };
+        int prev = -1;
+        for (long v : samples) {
+            int i = Metrics.Histogram.index(v);
+            assertTrue(i >= prev);
+            assertTrue(Metrics.Histogram.upperBound(i) >= v);
+            prev = i;
+        }
+    }
+
+    @Test
+    void testRender_ListsCountersAndHistograms() {
+        Metrics.counter("test.render.count").add(3);
+        Metrics.histogram("test.render.latency_us").record(42);
+        String text = Metrics.render();
+
+        assertTrue(text.contains("test.render.count 3\n"));
+        assertTrue(text.contains("test.render.latency_us count=1"));
+        Metrics.removePrefix("test.render.");
+        assertFalse(Metrics.render().contains("test.render."));
+    }
+}
@@ -0,0 +1,68 @@
+package pdc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JUnit 5 tests for RpcClient against a Master with no Workers (jobs run locally).
+ */
+class RpcClientTest {
+
+    private Master master;
+    private RpcClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        master = new Master(port);
+        master.start();
+        client = new RpcClient("localhost", port, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        master.shutdown();
+    }
+
+    @Test
+    void testSubmit_ManyConcurrentJobs() throws Exception {
+        // Far more than Master admits per connection, so BUSY replies are retried too
+        List<int[][]> inputs = new ArrayList<>();
+        List<CompletableFuture<RpcClient.Result>> results = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int[][] a = MatrixGenerator.generateRandomMatrix(4, 3, 10);
+            inputs.add(a);
+            results.add(client.submit(RpcClient.Job.multiply(a, Worker.transpose(a))));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            int[][] a = inputs.get(i);
+            assertArrayEquals(Worker.multiply(a, Worker.transpose(a)), results.get(i).get(30, TimeUnit.SECONDS).matrix());
+        }
+        assertEquals(0, client.inFlight());
+    }
+
+    @Test
+    void testSubmit_OptionsAndErrors() throws Exception {
+        int[][] big = { { 2_000_000_000, 2_000_000_000 } };
+        int[][] col = { { 2 }, { 2 } };
+        RpcClient.Result wide = client.submit(RpcClient.Job.multiply(big, col).result(ResultType.LONG)).get();
+        assertArrayEquals(new long[][] { { 8_000_000_000L } }, wide.wideMatrix());
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> client.submit(new RpcClient.Job("MATRIX_MULTIPLY", "1,2|3,4").result(ResultType.LONG)).get());
+        assertTrue(e.getCause() instanceof RpcClient.RpcException);
+    }
+}
@@ -0,0 +1,58 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit 5 tests for SparseMatrix and the sparse kernels.
+ * Sparse results are checked against the dense kernel.
+ */
+class SparseMatrixTest {
+
+    private static int[][] sparseRandom(int rows, int cols, int everyNth) {
+        int[][] m = MatrixGenerator.generateRandomMatrix(rows, cols, 50);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if ((i * cols + j) % everyNth != 0) m[i][j] = 0;
+            }
+        }
+        return m;
+    }
+
+    @Test
+    void testDenseRoundTrip() {
+        int[][] m = sparseRandom(13, 7, 5);
+        SparseMatrix csr = SparseMatrix.fromDense(m);
+        assertArrayEquals(m, csr.toDense());
+        assertEquals(SparseMatrix.density(m), csr.density(), 1e-9);
+    }
+
+    @Test
+    void testWireRoundTrip() {
+        SparseMatrix csr = SparseMatrix.fromDense(MatrixGenerator.generateIdentityMatrix(64));
+        byte[] data = Message.encodeSparseTile(csr);
+        assertTrue(Message.isSparseTile(data));
+        assertArrayEquals(csr.toDense(), Message.decodeTile(data));
+        assertTrue(data.length < Message.encodeTile(csr.toDense()).length);
+    }
+
+    @Test
+    void testRowSlice() {
+        int[][] m = sparseRandom(10, 6, 3);
+        SparseMatrix slice = SparseMatrix.fromDense(m).rowSlice(3, 7);
+        assertArrayEquals(java.util.Arrays.copyOfRange(m, 3, 7), slice.toDense());
+    }
+
+    @Test
+    void testKernels_MatchDense() {
+        int[][] a = sparseRandom(20, 15, 4);
+        int[][] b = sparseRandom(15, 11, 3);
+        int[][] expected = Worker.multiply(a, b);
+        SparseMatrix sa = SparseMatrix.fromDense(a);
+        SparseMatrix sb = SparseMatrix.fromDense(b);
+
+        assertArrayEquals(expected, Worker.multiply(sa, b));
+        assertArrayEquals(expected, Worker.multiply(a, sb));
+        assertArrayEquals(expected, Worker.multiply(sa, sb).toDense());
+    }
+}
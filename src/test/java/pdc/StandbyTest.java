@@ -0,0 +1,29 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit 5 tests for the standby's view of the primary's replication log.
+ */
+class StandbyTest {
+
+    @Test
+    void testApply_TracksReservationAndOpenJobs() {
+        Standby s = new Standby("localhost", 0, Standby.FAILOVER_MS);
+        s.apply("reset");
+        s.apply("ids;4096");
+        s.apply("job;alice;t1;MATRIX_MULTIPLY;1,2\\3,4|5,6\\7,8;result=long");
+        s.apply("job;bob;t1;BLOCK_TRANSPOSE;1,2\\3,4");
+        s.apply("hb");
+        s.apply("done;alice;t1");
+
+        assertEquals(4096, s.nextTaskId());
+        assertEquals(1, s.jobs().size());
+        assertEquals("bob;t1;BLOCK_TRANSPOSE;1,2\\3,4", s.jobs().get("bob;t1"));
+
+        // A new snapshot replaces everything seen before it
+        s.apply("reset");
+        assertTrue(s.jobs().isEmpty());
+    }
+}
@@ -0,0 +1,57 @@
+package pdc;
+
+/**
+ * Classical vs Strassen-Winograd MATMUL through Master.coordinate, without a
+ * cluster (tile tasks run on Master's compute pool). For each size it reports the
+ * best time of the classical row-block path and of each Strassen cutoff, so the
+ * crossover size and a good MASTER_STRASSEN_CUTOFF can be read off.
+ *
+ * Usage: StrassenBenchmark [sizes=128,256,512,1024] [cutoffs=64,128,256] [runs=3]
+ */
+public class StrassenBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = ints(args.length > 0 ? args[0] : "128,256,512,1024");
+        int[] cutoffs = ints(args.length > 1 ? args[1] : "64,128,256");
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        Master master = new Master(0);
+        try {
+            System.out.printf("%-6s %-10s %12s %8s%n", "size", "mode", "best ms", "speedup");
+            for (int n : sizes) {
+                int[][] a = MatrixGenerator.generateRandomMatrix(n, n, 100);
+                int[][] b = MatrixGenerator.generateRandomMatrix(n, n, 100);
+                int workers = Runtime.getRuntime().availableProcessors();
+
+                master.enableStrassen(0);
+                int[][] expected = Worker.multiply(a, b);
+                double classical = best(master, a, b, workers, runs, expected);
+                System.out.printf("%-6d %-10s %12.1f %8s%n", n, "classical", classical, "1.00");
+                for (int cutoff : cutoffs) {
+                    if (cutoff >= n) continue;
+                    master.enableStrassen(cutoff);
+                    double ms = best(master, a, b, workers, runs, expected);
+                    System.out.printf("%-6d %-10s %12.1f %8.2f%n", n, "cut=" + cutoff, ms, classical / ms);
+                }
+            }
+        } finally {
+            master.shutdown();
+        }
+    }
+
+    private static double best(Master master, int[][] a, int[][] b, int workers, int runs, int[][] expected) {
+        double best = Double.MAX_VALUE;
+        for (int r = 0; r <= runs; r++) {   // first run is warmup
+            long t0 = System.nanoTime();
+            int[][] c = (int[][]) master.coordinate("MATMUL", a, b, workers);
+            double ms = (System.nanoTime() - t0) / 1e6;
+            if (!java.util.Arrays.deepEquals(c, expected)) throw new AssertionError("Wrong product");
+            if (r > 0) best = Math.min(best, ms);
+        }
+        return best;
+    }
+
+    private static int[] ints(String csv) {
+        return java.util.Arrays.stream(csv.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+}
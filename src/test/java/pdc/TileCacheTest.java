@@ -0,0 +1,45 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit 5 tests for the Worker-side TileCache and operand references.
+ */
+class TileCacheTest {
+
+    @Test
+    void testLru_EvictsLeastRecentlyUsed() {
+        TileCache cache = new TileCache(30);
+        cache.put("j0:B:0:0", "0123456789");
+        cache.put("j0:B:0:1", "0123456789");
+        assertNotNull(cache.get("j0:B:0:0"));          // touch, so 0:1 is now oldest
+        cache.put("j0:B:0:2", "0123456789abcdef");
+
+        assertTrue(cache.contains("j0:B:0:0"));
+        assertFalse(cache.contains("j0:B:0:1"));
+        assertTrue(cache.bytes() <= 30);
+    }
+
+    @Test
+    void testOversizedTile_NotStored() {
+        TileCache cache = new TileCache(4);
+        cache.put("big", "0123456789");
+        assertEquals(0, cache.size());
+        assertNull(cache.get("big"));
+    }
+
+    @Test
+    void testResolveRefs_StoreThenReference() {
+        Worker worker = new Worker("w", "localhost", 0);
+        String tile = Message.encodeTileString(MatrixGenerator.generateIdentityMatrix(3));
+        String a = Message.encodeTileString(new int[][] { { 1, 2, 3 } });
+
+        assertEquals("MATMUL_TILE;" + a + ";" + tile, worker.resolveRefs("MATMUL_TILE;" + a + ";#j1:B:0:0=" + tile));
+        assertEquals("MATMUL_TILE;" + a + ";" + tile, worker.resolveRefs("MATMUL_TILE;" + a + ";@j1:B:0:0"));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> worker.resolveRefs("MATMUL_TILE;" + a + ";@j9:B:0:0"));
+        assertEquals("CACHE_MISS:j9:B:0:0", e.getMessage());
+    }
+}
@@ -0,0 +1,72 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit 5 tests for the binary tile codec in Message.
+ * Checks round-trips and that the encoding is picked by value range.
+ */
+class TileCodecTest {
+
+    @Test
+    void testRoundTrip_RandomMatrix() {
+        int[][] tile = MatrixGenerator.generateRandomMatrix(17, 9, 100);
+        assertArrayEquals(tile, Message.decodeTile(Message.encodeTile(tile)));
+    }
+
+    @Test
+    void testRoundTrip_ExtremeValues() {
+        int[][] tile = { { Integer.MIN_VALUE, Integer.MAX_VALUE }, { 0, -1 } };
+        assertArrayEquals(tile, Message.decodeTile(Message.encodeTile(tile)));
+    }
+
+    @Test
+    void testLongTile_RoundTripAndWidening() {
+        long[][] tile = { { Long.MIN_VALUE, Long.MAX_VALUE, 0 }, { -1, 1L << 40, 7 } };
+        assertArrayEquals(tile, Message.decodeLongTileString(Message.encodeLongTileString(tile)));
+
+        int[][] narrow = { { Integer.MIN_VALUE, 3 } };
+        assertArrayEquals(new long[][] { { Integer.MIN_VALUE, 3 } }, Message.decodeLongTile(Message.encodeTile(narrow)));
+    }
+
+    @Test
+    void testRoundTrip_EmptyTile() {
+        int[][] tile = new int[0][0];
+        assertEquals(0, Message.decodeTile(Message.encodeTile(tile)).length);
+    }
+
+    @Test
+    void testEncoding_PickedByRange() {
+        int[][] small = MatrixGenerator.generateRandomMatrix(8, 8, 10);
+        assertNotEquals(Message.TILE_FIXED, Message.encodeTile(small)[0]);
+
+        int[][] filled = MatrixGenerator.generateFilledMatrix(8, 8, 1_000_000);
+        assertEquals(Message.TILE_FOR, Message.encodeTile(filled)[0]);
+        assertArrayEquals(filled, Message.decodeTile(Message.encodeTile(filled)));
+
+        java.util.Random rnd = new java.util.Random(42);
+        int[][] wide = new int[8][8];
+        for (int[] row : wide) {
+            for (int j = 0; j < row.length; j++) row[j] = rnd.nextInt();
+        }
+        assertEquals(Message.TILE_FIXED, Message.encodeTile(wide)[0]);
+        assertArrayEquals(wide, Message.decodeTile(Message.encodeTile(wide)));
+    }
+
+    @Test
+    void testEncoding_SmallerThanText() {
+        int[][] tile = MatrixGenerator.generateRandomMatrix(32, 32, 100);
+        StringBuilder text = new StringBuilder();
+        for (int[] row : tile) {
+            for (int v : row) text.append(v).append(',');
+        }
+        assertTrue(Message.encodeTile(tile).length < text.length());
+    }
+
+    @Test
+    void testStringForm_RoundTrip() {
+        int[][] tile = MatrixGenerator.generateIdentityMatrix(5);
+        assertArrayEquals(tile, Message.decodeTileString(Message.encodeTileString(tile)));
+    }
+}
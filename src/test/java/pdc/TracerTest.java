@@ -0,0 +1,59 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * JUnit 5 tests for trace context propagation and Chrome-trace export.
+ */
+class TracerTest {
+
+    @Test
+    void testTraceContext_SurvivesJsonAndBinary() {
+        Message msg = new Message();
+        msg.messageType = "RPC_REQUEST";
+        msg.studentId = "master";
+        msg.payloadStr = "7;SCALE_TILE;x;2";
+        msg.trace = Tracer.context(0xabcL, 7);
+
+        Message json = Message.parse(msg.toJson());
+        assertEquals("abc:7", json.trace);
+        assertEquals("7;SCALE_TILE;x;2", json.payloadStr);
+
+        msg.payload = msg.payloadStr.getBytes(StandardCharsets.UTF_8);
+        Message bin = Message.unpack(msg.pack());
+        assertEquals("abc:7", bin.trace);
+        assertEquals(0, bin.flags);
+
+        msg.trace = null;
+        assertNull(Message.parse(msg.toJson()).trace);
+        assertFalse(msg.toJson().contains("trace"));
+    }
+
+    @Test
+    void testExport_WritesChromeTraceEvents() throws Exception {
+        Tracer.enable();
+        long t0 = System.nanoTime();
+        Tracer.span("Worker w9", "compute", t0, t0 + 2_000_000, "abc:9");
+        Tracer.flow("Master", true, t0, "abc:9");
+        Tracer.span("Worker \"a\\b\"\n\u0001", "compute", t0, t0 + 1000, "abc:10");
+
+        Path file = Files.createTempFile("trace", ".json");
+        try {
+            Tracer.export(file.toString());
+            String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            assertTrue(json.startsWith("{\"traceEvents\":["));
+            assertTrue(json.contains("\"name\":\"Worker w9\""));
+            assertTrue(json.contains("\"name\":\"compute\",\"cat\":\"task\",\"ph\":\"X\""));
+            assertTrue(json.contains("\"dur\":2000"));
+            assertTrue(json.contains("\"ph\":\"s\""));
+            assertTrue(json.contains("\"name\":\"Worker \\\"a\\\\b\\\"\\n\\u0001\""));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -4,6 +4,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
 /**
  * JUnit 5 tests for the Worker class.
  * Tests worker lifecycle and asynchronous behaviors.
@@ -31,4 +36,30 @@ class WorkerTest {
             worker.execute();
         }, "Worker execute should be a non-blocking invocation of the processing loop");
     }
+
+    @Test
+    void testResume_ResendsResultWhoseWriteFailed() {
+        Worker w = new Worker("w1", "localhost", 0);
+        w.pending.put("7", 0);
+        w.deliver("7", "result-7");   // not acked yet: kept for the resume
+
+        // The connection breaks again while the resumed session is being answered
+        w.out = new PrintWriter(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("broken pipe");
+            }
+        }, true);
+        Message ack = new Message();
+        ack.messageType = "WORKER_ACK";
+        ack.payloadStr = "compress=none;session=s1;resumed";
+        w.handleWorkerAck(ack);
+        assertTrue(w.pending.containsKey("7"));
+
+        StringWriter sent = new StringWriter();
+        w.out = new PrintWriter(sent, true);
+        w.handleWorkerAck(ack);
+        assertEquals("result-7", sent.toString().trim());
+        assertTrue(w.pending.isEmpty());
+    }
 }